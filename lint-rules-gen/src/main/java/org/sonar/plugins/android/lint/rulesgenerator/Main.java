@@ -19,8 +19,44 @@
  */
 package org.sonar.plugins.android.lint.rulesgenerator;
 
+import com.android.tools.lint.checks.BuiltinIssueRegistry;
+import com.google.common.base.Charsets;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.LoggerFactory;
+import org.sonar.plugins.android.lint.ColumnarLintReport;
+import org.sonar.plugins.android.lint.RuleCatalog;
+
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
 public class Main {
-  public static void main(String[] args) {
+  public static void main(String[] args) throws Exception {
+    if (args.length > 0 && "catalog".equals(args[0])) {
+      // only recompile the catalog from the XML files kept in the resources of this module, e.g. after editing java-model.xml
+      Reader rulesXml = new InputStreamReader(Main.class.getResourceAsStream(RuleCatalogCompiler.RULES_XML_PATH), Charsets.UTF_8);
+      Reader profileXml = new InputStreamReader(Main.class.getResourceAsStream(RuleCatalogCompiler.PROFILE_XML_PATH), Charsets.UTF_8);
+      try {
+        RuleCatalogCompiler compiler = new RuleCatalogCompiler();
+        RuleCatalog catalog = compiler.compile(rulesXml, RuleCatalogCompiler.SQALE_MODEL_PATH, profileXml, new BuiltinIssueRegistry());
+        compiler.write(catalog, SonarRulesGenerator.CATALOG_FILE);
+      } finally {
+        IOUtils.closeQuietly(rulesXml);
+        IOUtils.closeQuietly(profileXml);
+      }
+      return;
+    }
+    if (args.length > 0 && "convert".equals(args[0])) {
+      // convert <lint-results.xml> [<lint-results.lintbin>]: reports converted once can be imported many times
+      if (args.length < 2) {
+        throw new IllegalArgumentException("Usage: convert <lint-results.xml> [<output" + ColumnarLintReport.EXTENSION + ">]");
+      }
+      File lintXml = new File(args[1]);
+      File output = new File(args.length > 2 ? args[2] : lintXml.getPath().replaceFirst("\\.xml(\\.gz)?$", "") + ColumnarLintReport.EXTENSION);
+      int records = ColumnarLintReport.convert(lintXml, output);
+      LoggerFactory.getLogger(Main.class).info("Converted {} issue location(s) to {}", records, output);
+      return;
+    }
     SonarRulesGenerator generator = new SonarRulesGenerator();
     generator.generateRules();
   }
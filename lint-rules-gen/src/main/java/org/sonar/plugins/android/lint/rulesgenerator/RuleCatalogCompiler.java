@@ -0,0 +1,103 @@
+/*
+ * SonarQube Android Lint Rules Generator
+ * Copyright (C) 2015-2016 SonarSource SA and Jordan Hansen
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint.rulesgenerator;
+
+import com.android.tools.lint.client.api.IssueRegistry;
+import com.android.tools.lint.detector.api.Issue;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.IOUtils;
+import org.sonar.api.server.rule.RulesDefinition;
+import org.sonar.api.server.rule.RulesDefinitionXmlLoader;
+import org.sonar.plugins.android.lint.AndroidLintRulesDefinition;
+import org.sonar.plugins.android.lint.RuleCatalog;
+import org.sonar.plugins.android.lint.XmlBinding;
+import org.sonar.plugins.android.lint.rulesgenerator.dto.DtoProfile;
+import org.sonar.plugins.android.lint.rulesgenerator.dto.DtoProfileRule;
+import org.sonar.plugins.java.Java;
+import org.sonar.squidbridge.rules.SqaleXmlLoader;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compiles rules.xml, the SQALE model and the default profile into the {@link RuleCatalog} loaded by the plugin.
+ * Rules are loaded with the same loaders the plugin used to rely on, so that the catalog defines exactly the same rules.
+ * The default lint severity and priority of each rule are taken from the lint issue registry.
+ */
+public class RuleCatalogCompiler {
+
+  // sources of the catalog, in the resources of this module only
+  static final String RULES_XML_PATH = "/org/sonar/plugins/android/lint/rules.xml";
+  static final String SQALE_MODEL_PATH = "/org/sonar/plugins/android/lint/java-model.xml";
+  static final String PROFILE_XML_PATH = "/org/sonar/plugins/android/lint/android_lint_sonar_way.xml";
+
+  public RuleCatalog compile(Reader rulesXml, String sqaleModelPath, Reader profileXml, IssueRegistry registry) throws Exception {
+    RulesDefinition.Context context = new RulesDefinition.Context();
+    RulesDefinition.NewRepository repository = context.createRepository(AndroidLintRulesDefinition.REPOSITORY_KEY, Java.KEY);
+    new RulesDefinitionXmlLoader().load(repository, rulesXml);
+    SqaleXmlLoader.load(repository, sqaleModelPath);
+    repository.done();
+
+    List<RulesDefinition.Rule> definedRules = Lists.newArrayList(context.repository(AndroidLintRulesDefinition.REPOSITORY_KEY).rules());
+    Collections.sort(definedRules, new Comparator<RulesDefinition.Rule>() {
+      @Override
+      public int compare(RulesDefinition.Rule rule1, RulesDefinition.Rule rule2) {
+        return rule1.key().compareTo(rule2.key());
+      }
+    });
+    List<RuleCatalog.Rule> rules = Lists.newArrayList();
+    List<String> htmlDescriptions = Lists.newArrayList();
+    for (RulesDefinition.Rule rule : definedRules) {
+      Issue issue = registry.getIssue(rule.key());
+      if (issue == null) {
+        throw new IllegalStateException("Rule " + rule.key() + " is not a lint issue");
+      }
+      rules.add(RuleCatalog.Rule.of(rule, issue.getDefaultSeverity(), issue.getPriority()));
+      htmlDescriptions.add(rule.htmlDescription());
+    }
+
+    DtoProfile profile = XmlBinding.serializer().read(DtoProfile.class, profileXml);
+    List<String> profileRuleKeys = Lists.newArrayList();
+    for (DtoProfileRule rule : profile.getRules()) {
+      if (AndroidLintRulesDefinition.REPOSITORY_KEY.equals(rule.getRepositoryKey())) {
+        profileRuleKeys.add(rule.getKey());
+      }
+    }
+    return new RuleCatalog(profile.getName(), profile.getLanguage(), profileRuleKeys, rules, htmlDescriptions);
+  }
+
+  @SuppressWarnings("ResultOfMethodCallIgnored")
+  public void write(RuleCatalog catalog, File catalogFile) throws IOException {
+    catalogFile.getParentFile().mkdirs();
+    OutputStream output = new BufferedOutputStream(new FileOutputStream(catalogFile));
+    try {
+      catalog.write(output);
+    } finally {
+      IOUtils.closeQuietly(output);
+    }
+  }
+}
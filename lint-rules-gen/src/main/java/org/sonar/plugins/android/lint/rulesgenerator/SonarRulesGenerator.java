@@ -23,12 +23,14 @@ import com.android.tools.lint.checks.BuiltinIssueRegistry;
 import com.android.tools.lint.client.api.IssueRegistry;
 import com.android.tools.lint.detector.api.Category;
 import com.android.tools.lint.detector.api.Issue;
+import com.google.common.base.Charsets;
+import org.apache.commons.io.IOUtils;
 import org.simpleframework.xml.Serializer;
-import org.simpleframework.xml.core.Persister;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.plugins.android.lint.AndroidLintRulesDefinition;
-import org.sonar.plugins.android.lint.AndroidLintSonarWay;
+import org.sonar.plugins.android.lint.RuleCatalog;
+import org.sonar.plugins.android.lint.XmlBinding;
 import org.sonar.plugins.android.lint.rulesgenerator.dto.DtoProfile;
 import org.sonar.plugins.android.lint.rulesgenerator.dto.DtoRule;
 import org.sonar.plugins.android.lint.rulesgenerator.dto.DtoRules;
@@ -36,6 +38,9 @@ import org.sonar.plugins.java.Java;
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -49,8 +54,9 @@ public class SonarRulesGenerator {
   private static final int WARNING_MAJOR_PRIORITY = 7;
   private static final String PROFILE_NAME = "Android Lint";
   private static final File BASE_OUTPUT_DIR = new File("out");
-  private static final File RULES_FILE = new File(BASE_OUTPUT_DIR, AndroidLintRulesDefinition.RULES_XML_PATH);
-  private static final File PROFILE_FILE = new File(BASE_OUTPUT_DIR, AndroidLintSonarWay.PROFILE_XML_PATH);
+  private static final File RULES_FILE = new File(BASE_OUTPUT_DIR, RuleCatalogCompiler.RULES_XML_PATH);
+  private static final File PROFILE_FILE = new File(BASE_OUTPUT_DIR, RuleCatalogCompiler.PROFILE_XML_PATH);
+  static final File CATALOG_FILE = new File(BASE_OUTPUT_DIR, RuleCatalog.CATALOG_PATH);
 
   private DtoProfile dtoProfile = new DtoProfile();
   private DtoRules dtoRules = new DtoRules();
@@ -69,14 +75,28 @@ public class SonarRulesGenerator {
     PROFILE_FILE.getParentFile().mkdirs();
 
     try {
-      Serializer serializer = new Persister();
+      Serializer serializer = XmlBinding.serializer();
       serializer.write(dtoRules, RULES_FILE);
       serializer.write(dtoProfile, PROFILE_FILE);
+      compileCatalog();
     } catch (Exception e) {
       LOGGER.error("Failed to write files", e);
     }
   }
 
+  private static void compileCatalog() throws Exception {
+    Reader rulesXml = new InputStreamReader(new FileInputStream(RULES_FILE), Charsets.UTF_8);
+    Reader profileXml = new InputStreamReader(new FileInputStream(PROFILE_FILE), Charsets.UTF_8);
+    try {
+      RuleCatalogCompiler compiler = new RuleCatalogCompiler();
+      RuleCatalog catalog = compiler.compile(rulesXml, RuleCatalogCompiler.SQALE_MODEL_PATH, profileXml, new BuiltinIssueRegistry());
+      compiler.write(catalog, CATALOG_FILE);
+    } finally {
+      IOUtils.closeQuietly(rulesXml);
+      IOUtils.closeQuietly(profileXml);
+    }
+  }
+
   private void processIssue(Issue issue) {
     DtoRule dtoRule = new DtoRule();
     dtoRule.setKey(issue.getId());
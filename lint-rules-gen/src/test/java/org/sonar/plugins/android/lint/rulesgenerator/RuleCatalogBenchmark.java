@@ -0,0 +1,88 @@
+/*
+ * SonarQube Android Lint Rules Generator
+ * Copyright (C) 2015-2016 SonarSource SA and Jordan Hansen
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint.rulesgenerator;
+
+import com.google.common.base.Charsets;
+import org.sonar.api.profiles.XMLProfileParser;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.RuleFinder;
+import org.sonar.api.rules.RuleQuery;
+import org.sonar.api.utils.ValidationMessages;
+import org.sonar.plugins.android.lint.AndroidLintSonarWay;
+import org.sonar.plugins.android.lint.RuleCatalog;
+
+import java.io.InputStreamReader;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Start-up cost of defining the rules and the default profile from the XML files and from the compiled catalog.
+ * Not run by the build: {@code java -cp ... org.sonar.plugins.android.lint.rulesgenerator.RuleCatalogBenchmark}.
+ */
+public class RuleCatalogBenchmark {
+
+  private static final int ITERATIONS = 20;
+
+  public static void main(String[] args) throws Exception {
+    RuleFinder ruleFinder = new RuleFinder() {
+      @Override
+      public Rule findById(int ruleId) {
+        return null;
+      }
+
+      @Override
+      public Rule findByKey(String repositoryKey, String key) {
+        return Rule.create(repositoryKey, key);
+      }
+
+      @Override
+      public Rule findByKey(RuleKey key) {
+        return Rule.create(key.repository(), key.rule());
+      }
+
+      @Override
+      public Rule find(RuleQuery query) {
+        return null;
+      }
+
+      @Override
+      public Collection<Rule> findAll(RuleQuery query) {
+        return Collections.emptyList();
+      }
+    };
+    for (int i = 0; i < ITERATIONS; i++) {
+      long start = System.nanoTime();
+      RuleCatalogCompilerTest.defineFromXml();
+      new XMLProfileParser(ruleFinder).parse(
+        new InputStreamReader(RuleCatalogBenchmark.class.getResourceAsStream(RuleCatalogCompiler.PROFILE_XML_PATH), Charsets.UTF_8),
+        ValidationMessages.create());
+      long xml = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      RuleCatalogCompilerTest.defineFromCatalog(RuleCatalog.load());
+      new AndroidLintSonarWay(ruleFinder).createProfile(ValidationMessages.create());
+      long catalog = System.nanoTime() - start;
+
+      System.out.printf("xml %7.2f ms   catalog %7.2f ms%n", xml / 1e6, catalog / 1e6);
+    }
+  }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * SonarQube Android Lint Rules Generator
+ * Copyright (C) 2015-2016 SonarSource SA and Jordan Hansen
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint.rulesgenerator;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.profiles.XMLProfileParser;
+import org.sonar.api.rules.ActiveRule;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.RuleFinder;
+import org.sonar.api.server.rule.RulesDefinition;
+import org.sonar.api.server.rule.RulesDefinitionXmlLoader;
+import org.sonar.api.utils.ValidationMessages;
+import org.sonar.plugins.android.lint.AndroidLintRulesDefinition;
+import org.sonar.plugins.android.lint.AndroidLintSonarWay;
+import org.sonar.plugins.android.lint.RuleCatalog;
+import org.sonar.squidbridge.rules.SqaleXmlLoader;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RuleCatalogCompilerTest {
+
+  @Test
+  public void bundled_catalog_should_define_same_rules_as_xml_files() throws Exception {
+    RulesDefinition.Repository expected = defineFromXml();
+    RulesDefinition.Repository actual = defineFromCatalog(RuleCatalog.load());
+
+    assertThat(actual.rules()).hasSize(expected.rules().size());
+    for (RulesDefinition.Rule expectedRule : expected.rules()) {
+      RulesDefinition.Rule rule = actual.rule(expectedRule.key());
+      assertThat(rule).as(expectedRule.key()).isNotNull();
+      assertThat(rule.name()).isEqualTo(expectedRule.name());
+      assertThat(rule.htmlDescription()).isEqualTo(expectedRule.htmlDescription());
+      assertThat(rule.severity()).isEqualTo(expectedRule.severity());
+      assertThat(rule.status()).isEqualTo(expectedRule.status());
+      assertThat(rule.tags()).isEqualTo(expectedRule.tags());
+      assertThat(rule.debtSubCharacteristic()).isEqualTo(expectedRule.debtSubCharacteristic());
+      if (expectedRule.debtRemediationFunction() == null) {
+        assertThat(rule.debtRemediationFunction()).isNull();
+      } else {
+        assertThat(rule.debtRemediationFunction().type()).isEqualTo(expectedRule.debtRemediationFunction().type());
+        assertThat(rule.debtRemediationFunction().coefficient()).isEqualTo(expectedRule.debtRemediationFunction().coefficient());
+        assertThat(rule.debtRemediationFunction().offset()).isEqualTo(expectedRule.debtRemediationFunction().offset());
+      }
+    }
+  }
+
+  @Test
+  public void bundled_catalog_should_define_same_profile_as_xml_file() throws Exception {
+    Reader reader = new InputStreamReader(getClass().getResourceAsStream(RuleCatalogCompiler.PROFILE_XML_PATH), Charsets.UTF_8);
+    try {
+      RulesProfile expected = new XMLProfileParser(ruleFinder()).parse(reader, ValidationMessages.create());
+      RulesProfile actual = new AndroidLintSonarWay(ruleFinder()).createProfile(ValidationMessages.create());
+
+      assertThat(actual.getName()).isEqualTo(expected.getName());
+      assertThat(actual.getLanguage()).isEqualTo(expected.getLanguage());
+      assertThat(ruleKeys(actual.getActiveRules())).isEqualTo(ruleKeys(expected.getActiveRules()));
+    } finally {
+      reader.close();
+    }
+  }
+
+  static RulesDefinition.Repository defineFromXml() throws Exception {
+    RulesDefinition.Context context = new RulesDefinition.Context();
+    RulesDefinition.NewRepository repository = context.createRepository(AndroidLintRulesDefinition.REPOSITORY_KEY, "java");
+    Reader reader = new InputStreamReader(RuleCatalogCompilerTest.class.getResourceAsStream(RuleCatalogCompiler.RULES_XML_PATH), Charsets.UTF_8);
+    try {
+      new RulesDefinitionXmlLoader().load(repository, reader);
+    } finally {
+      reader.close();
+    }
+    SqaleXmlLoader.load(repository, RuleCatalogCompiler.SQALE_MODEL_PATH);
+    repository.done();
+    return context.repository(AndroidLintRulesDefinition.REPOSITORY_KEY);
+  }
+
+  static RulesDefinition.Repository defineFromCatalog(RuleCatalog catalog) {
+    RulesDefinition.Context context = new RulesDefinition.Context();
+    RulesDefinition.NewRepository repository = context.createRepository(AndroidLintRulesDefinition.REPOSITORY_KEY, "java");
+    catalog.define(repository);
+    repository.done();
+    return context.repository(AndroidLintRulesDefinition.REPOSITORY_KEY);
+  }
+
+  static RuleFinder ruleFinder() {
+    RuleFinder ruleFinder = mock(RuleFinder.class);
+    when(ruleFinder.findByKey(eq(AndroidLintRulesDefinition.REPOSITORY_KEY), anyString())).thenAnswer(new Answer<Rule>() {
+      @Override
+      public Rule answer(InvocationOnMock invocation) throws Throwable {
+        return Rule.create(AndroidLintRulesDefinition.REPOSITORY_KEY, (String) invocation.getArguments()[1]);
+      }
+    });
+    return ruleFinder;
+  }
+
+  private static List<String> ruleKeys(List<ActiveRule> activeRules) {
+    List<String> keys = Lists.newArrayList();
+    for (ActiveRule activeRule : activeRules) {
+      keys.add(activeRule.getRuleKey());
+    }
+    return keys;
+  }
+
+}
@@ -20,33 +20,102 @@
 package org.sonar.plugins.android;
 
 import com.google.common.collect.ImmutableList;
+import org.sonar.api.Properties;
 import org.sonar.api.Property;
+import org.sonar.api.PropertyType;
 import org.sonar.api.SonarPlugin;
 import org.sonar.plugins.android.lint.AndroidLintProfileExporter;
 import org.sonar.plugins.android.lint.AndroidLintProfileImporter;
 import org.sonar.plugins.android.lint.AndroidLintRulesDefinition;
 import org.sonar.plugins.android.lint.AndroidLintSensor;
 import org.sonar.plugins.android.lint.AndroidLintSonarWay;
+import org.sonar.plugins.android.lint.ColumnarLintReport;
+import org.sonar.plugins.android.lint.LintReportCache;
 
 import java.util.List;
 
-@Property(
-  key = AndroidPlugin.LINT_REPORT_PROPERTY,
-  defaultValue = AndroidPlugin.LINT_REPORT_PROPERTY_DEFAULT,
-  name = "Lint Report file",
-  description = "Path (absolute or relative) to the lint-results.xml file.",
-  project = true,
-  module = true,
-  global = false)
+@Properties({
+  @Property(
+    key = AndroidPlugin.LINT_REPORT_PROPERTY,
+    defaultValue = AndroidPlugin.LINT_REPORT_PROPERTY_DEFAULT,
+    name = "Lint Report files",
+    description = "Comma-separated paths (absolute or relative) to the lint-results.xml files. Glob patterns such as "
+      + "**/build/outputs/lint-results*.xml are accepted, as well as gzipped reports (lint-results.xml.gz) and entries of zip "
+      + "archives (reports.zip!/app/lint-results.xml), and reports converted to the binary " + ColumnarLintReport.EXTENSION + " format "
+      + "by lint-rules-gen.",
+    project = true,
+    module = true,
+    global = false),
+  @Property(
+    key = AndroidPlugin.LINT_ENGINE_PROPERTY,
+    defaultValue = AndroidPlugin.LINT_ENGINE_SCANNER,
+    name = "Lint Report reader",
+    description = "Reader used to import the lint report: '" + AndroidPlugin.LINT_ENGINE_SCANNER + "' only decodes the attributes "
+      + "used by the plugin, '" + AndroidPlugin.LINT_ENGINE_MMAP + "' does the same on a memory-mapped report, which suits reports of "
+      + "several GB, '" + AndroidPlugin.LINT_ENGINE_STAX + "' relies on a standard XML parser.",
+    project = true,
+    module = true,
+    global = true),
+  @Property(
+    key = AndroidPlugin.LINT_THREADS_PROPERTY,
+    defaultValue = "1",
+    name = "Lint Report import threads",
+    description = "Number of threads resolving the files of lint issues. When greater than 1, the report is read, resolved and "
+      + "reported concurrently.",
+    type = PropertyType.INTEGER,
+    project = true,
+    module = true,
+    global = true),
+  @Property(
+    key = AndroidPlugin.LINT_MAX_MEMORY_PROPERTY,
+    name = "Lint issues memory budget (MB)",
+    description = "When set, issues are reported file after file, and those which do not fit in this budget are sorted on disk "
+      + "in the working directory. Otherwise issues are reported by batches.",
+    type = PropertyType.INTEGER,
+    project = true,
+    module = true,
+    global = true),
+  @Property(
+    key = AndroidPlugin.LINT_REPORT_INDEX_PROPERTY,
+    defaultValue = "false",
+    name = "Lint Report index",
+    description = "When enabled, the byte ranges of the issues of each file are written to the work directory of the root "
+      + "module the first time the report is read. Each module then only reads the issues of its own files, as long as the report does not change. "
+      + "Compressed reports and entries of archives are not indexed.",
+    type = PropertyType.BOOLEAN,
+    project = true,
+    module = true,
+    global = true),
+  @Property(
+    key = AndroidPlugin.LINT_REPLAY_CACHE_PROPERTY,
+    defaultValue = "false",
+    name = "Lint issues replay cache",
+    description = "When enabled, the issues resolved from the lint reports are kept in the working directory. The next analysis "
+      + "reports them again without reading the reports, as long as the reports, the active rules, the input files, the inclusions "
+      + "and exclusions and the plugin are the same.",
+    type = PropertyType.BOOLEAN,
+    project = true,
+    module = true,
+    global = true)
+})
 public class AndroidPlugin extends SonarPlugin {
 
   public static final String LINT_REPORT_PROPERTY = "sonar.android.lint.report";
   public static final String LINT_REPORT_PROPERTY_DEFAULT = "build/outputs/lint-results.xml";
+  public static final String LINT_ENGINE_PROPERTY = "sonar.android.lint.engine";
+  public static final String LINT_ENGINE_SCANNER = "scanner";
+  public static final String LINT_ENGINE_STAX = "stax";
+  public static final String LINT_ENGINE_MMAP = "mmap";
+  public static final String LINT_THREADS_PROPERTY = "sonar.android.lint.threads";
+  public static final String LINT_MAX_MEMORY_PROPERTY = "sonar.android.lint.maxMemoryMB";
+  public static final String LINT_REPORT_INDEX_PROPERTY = "sonar.android.lint.report.index";
+  public static final String LINT_REPLAY_CACHE_PROPERTY = "sonar.android.lint.replayCache";
 
   @Override
   public List getExtensions() {
     return ImmutableList.of(
       AndroidLintSensor.class,
+      LintReportCache.class,
       AndroidLintRulesDefinition.class,
       AndroidLintSonarWay.class,
       AndroidLintProfileExporter.class,
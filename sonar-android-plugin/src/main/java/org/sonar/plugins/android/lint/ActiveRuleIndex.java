@@ -0,0 +1,97 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Ordering;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.ActiveRule;
+
+import javax.annotation.CheckForNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable lookup table of the active android lint rules of a profile, built once per analysis.
+ * As a filter, it accepts the ids of active rules and counts the issues of any other id, so that they can be
+ * logged once per id instead of once per issue.
+ */
+class ActiveRuleIndex implements Predicate<String> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ActiveRuleIndex.class);
+
+  private final Map<String, RuleKey> ruleKeys;
+  private final ConcurrentMap<String, AtomicInteger> skippedIssues = new ConcurrentHashMap<String, AtomicInteger>();
+
+  ActiveRuleIndex(RulesProfile profile) {
+    ImmutableMap.Builder<String, RuleKey> keys = ImmutableMap.builder();
+    for (ActiveRule activeRule : profile.getActiveRulesByRepository(AndroidLintRulesDefinition.REPOSITORY_KEY)) {
+      keys.put(activeRule.getRuleKey(), activeRule.getRule().ruleKey());
+    }
+    ruleKeys = keys.build();
+  }
+
+  /**
+   * Key of an active rule, built once instead of once per issue.
+   */
+  @CheckForNull
+  RuleKey ruleKey(String ruleKey) {
+    return ruleKeys.get(ruleKey);
+  }
+
+  /**
+   * Keys of the active rules, sorted.
+   */
+  List<String> keys() {
+    return Ordering.natural().sortedCopy(ruleKeys.keySet());
+  }
+
+  @Override
+  public boolean apply(String ruleKey) {
+    if (ruleKeys.containsKey(ruleKey)) {
+      return true;
+    }
+    AtomicInteger count = skippedIssues.get(ruleKey);
+    if (count == null) {
+      AtomicInteger newCount = new AtomicInteger();
+      count = skippedIssues.putIfAbsent(ruleKey, newCount);
+      if (count == null) {
+        count = newCount;
+      }
+    }
+    count.incrementAndGet();
+    return false;
+  }
+
+  void logSkippedIssues() {
+    for (Map.Entry<String, AtomicInteger> entry : skippedIssues.entrySet()) {
+      LOGGER.warn("Unable to find rule for {}: {} issue(s) skipped", entry.getKey(), entry.getValue());
+    }
+  }
+
+}
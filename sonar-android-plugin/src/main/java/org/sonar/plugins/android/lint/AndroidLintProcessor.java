@@ -19,102 +19,421 @@
  */
 package org.sonar.plugins.android.lint;
 
-import org.simpleframework.xml.Attribute;
-import org.simpleframework.xml.ElementList;
-import org.simpleframework.xml.Root;
-import org.simpleframework.xml.Serializer;
-import org.simpleframework.xml.core.Persister;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.component.ResourcePerspectives;
-import org.sonar.api.issue.Issuable;
-import org.sonar.api.issue.Issue;
+import org.sonar.api.config.Settings;
 import org.sonar.api.profiles.RulesProfile;
-import org.sonar.api.rules.ActiveRule;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.plugins.android.AndroidPlugin;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLStreamException;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
 import java.util.List;
 
 public class AndroidLintProcessor {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(AndroidLintProcessor.class);
+  private static final int EMIT_BATCH_SIZE = 10000;
+  private static final String SPILL_DIR = "android-lint";
+  private static final String[] FILE_SELECTION_PROPERTIES = {
+    CoreProperties.PROJECT_INCLUSIONS_PROPERTY,
+    CoreProperties.PROJECT_EXCLUSIONS_PROPERTY,
+    CoreProperties.PROJECT_TEST_INCLUSIONS_PROPERTY,
+    CoreProperties.PROJECT_TEST_EXCLUSIONS_PROPERTY,
+    CoreProperties.GLOBAL_EXCLUSIONS_PROPERTY,
+    CoreProperties.GLOBAL_TEST_EXCLUSIONS_PROPERTY
+  };
   private final RulesProfile profile;
   private final ResourcePerspectives perspectives;
   private final FileSystem fs;
+  private final Settings settings;
+  private final LintReportCache reportCache;
+  private ActiveRuleIndex activeRules;
+  private InputFileIndex inputFiles;
+  private volatile boolean readFailed;
 
   public AndroidLintProcessor(RulesProfile profile, ResourcePerspectives perspectives, FileSystem fs) {
+    this(profile, perspectives, fs, new Settings());
+  }
+
+  public AndroidLintProcessor(RulesProfile profile, ResourcePerspectives perspectives, FileSystem fs, Settings settings) {
+    this(profile, perspectives, fs, settings, null);
+  }
+
+  /**
+   * @param reportCache when not null, reports read by several modules are parsed once for all of them, and only the
+   *                    issues located in the base directory of the module, or by a relative path, are processed
+   */
+  public AndroidLintProcessor(RulesProfile profile, ResourcePerspectives perspectives, FileSystem fs, Settings settings,
+    @Nullable LintReportCache reportCache) {
     this.profile = profile;
     this.perspectives = perspectives;
     this.fs = fs;
+    this.settings = settings;
+    this.reportCache = reportCache;
   }
 
   public void process(File lintXml) {
-    Serializer serializer = new Persister();
+    process(Collections.singletonList(lintXml));
+  }
+
+  /**
+   * Several reports are read concurrently, and their issues merged before being reported.
+   */
+  public void process(List<File> lintReports) {
+    final LintIssueEmitter emitter = newEmitter();
+    activeRules = new ActiveRuleIndex(profile);
+    readFailed = false;
+    IssueReplayCache.Writer cacheWriter = null;
     try {
-      LOGGER.info("Processing android lint report: "+lintXml.getPath());
-      LintIssues lintIssues = serializer.read(LintIssues.class, lintXml);
-      for (LintIssue lintIssue : lintIssues.issues) {
-        processIssue(lintIssue);
+      inputFiles = new InputFileIndex(fs);
+      LintIssuePipeline.Emitter issues = new LintIssuePipeline.Emitter() {
+        @Override
+        public void emit(ResolvedIssue issue) {
+          emitter.emit(issue);
+        }
+      };
+      IssueReplayCache replayCache = newReplayCache();
+      if (replayCache == null) {
+        processReports(lintReports, issues);
+      } else {
+        String key = replayKey(lintReports);
+        // a replay failing half way leaves issues which are emitted again, and then dropped as duplicates
+        if (replayCache.replay(key, inputFiles, issues)) {
+          for (File lintXml : lintReports) {
+            skipShared(lintXml);
+          }
+        } else {
+          cacheWriter = replayCache.writer(key);
+          processReports(lintReports, recording(issues, cacheWriter));
+          if (!readFailed) {
+            cacheWriter.commit();
+          }
+        }
+      }
+    } catch (Exception e) {
+      LOGGER.error("Exception processing android lint reports", e);
+    } finally {
+      if (cacheWriter != null) {
+        cacheWriter.abort();
+      }
+    }
+    emitter.flush();
+    emitter.logDuplicateIssues();
+    activeRules.logSkippedIssues();
+  }
+
+  private void processReports(List<File> lintReports, final LintIssuePipeline.Emitter emitter) throws Exception {
+    int threads = settings.getInt(AndroidPlugin.LINT_THREADS_PROPERTY);
+    if (threads > 1 || lintReports.size() > 1) {
+      processConcurrently(lintReports, Math.max(1, threads), emitter);
+    } else {
+      final List<ResolvedIssue> resolved = Lists.newArrayList();
+      for (File lintXml : lintReports) {
+        readReport(lintXml, new LintReportReader.IssueHandler() {
+          @Override
+          public void handle(LintIssue lintIssue) {
+            resolved.clear();
+            resolve(lintIssue, resolved);
+            for (int i = 0; i < resolved.size(); i++) {
+              emitter.emit(resolved.get(i));
+            }
+          }
+        });
+      }
+    }
+  }
+
+  /**
+   * Resolved issues are kept in the working directory, and replayed by the next analysis if neither the reports,
+   * the active rules nor the input files changed.
+   */
+  @CheckForNull
+  private IssueReplayCache newReplayCache() {
+    if (!settings.getBoolean(AndroidPlugin.LINT_REPLAY_CACHE_PROPERTY) || fs.workDir() == null) {
+      return null;
+    }
+    return new IssueReplayCache(new File(fs.workDir(), SPILL_DIR));
+  }
+
+  /**
+   * Input files are part of the key along with the settings selecting them, since only resolved issues are cached.
+   */
+  private String replayKey(List<File> lintReports) throws IOException {
+    List<String> parameters = Lists.newArrayList(fs.baseDir().getAbsolutePath(),
+      String.valueOf(settings.getBoolean(AndroidPlugin.LINT_REPORT_INDEX_PROPERTY)));
+    for (String property : FILE_SELECTION_PROPERTIES) {
+      parameters.add(property + "=" + Strings.nullToEmpty(settings.getString(property)));
+    }
+    return IssueReplayCache.key(lintReports, activeRules.keys(), inputFiles.relativePaths(), parameters.toArray(new String[parameters.size()]));
+  }
+
+  private static LintIssuePipeline.Emitter recording(final LintIssuePipeline.Emitter emitter, final IssueReplayCache.Writer cacheWriter) {
+    return new LintIssuePipeline.Emitter() {
+      @Override
+      public void emit(ResolvedIssue issue) {
+        cacheWriter.emit(issue);
+        emitter.emit(issue);
       }
+    };
+  }
+
+  /**
+   * Without a memory budget, issues are reported by batches. With one, they are sorted by file, spilling to the
+   * working directory when needed, or to the temporary directory without working directory, and reported file
+   * after file.
+   */
+  private LintIssueEmitter newEmitter() {
+    int maxMemoryMB = settings.getInt(AndroidPlugin.LINT_MAX_MEMORY_PROPERTY);
+    if (maxMemoryMB > 0) {
+      File spillDir = fs.workDir() == null ? FileUtils.getTempDirectory() : new File(fs.workDir(), SPILL_DIR);
+      return new LintIssueEmitter(perspectives, maxMemoryMB * 1024L * 1024L, spillDir);
+    }
+    return new LintIssueEmitter(perspectives, EMIT_BATCH_SIZE);
+  }
+
+  private void processConcurrently(List<File> lintReports, int threads, LintIssuePipeline.Emitter emitter) throws Exception {
+    List<LintIssuePipeline.Source> sources = Lists.newArrayList();
+    for (final File lintXml : lintReports) {
+      sources.add(new LintIssuePipeline.Source() {
+        @Override
+        public void read(LintReportReader.IssueHandler handler) {
+          readReport(lintXml, handler);
+        }
+      });
+    }
+    new LintIssuePipeline(threads).run(
+      sources,
+      new LintIssuePipeline.Resolver() {
+        @Override
+        public List<ResolvedIssue> resolve(LintIssue lintIssue) {
+          return AndroidLintProcessor.this.resolve(lintIssue);
+        }
+      },
+      emitter);
+  }
+
+  /**
+   * A report which cannot be read is logged, and does not prevent the other reports from being processed.
+   */
+  private void readReport(File lintXml, LintReportReader.IssueHandler handler) {
+    LOGGER.info("Processing android lint report: " + lintXml.getPath());
+    try {
+      read(lintXml, handler);
     } catch (Exception e) {
+      readFailed = true;
       LOGGER.error("Exception reading " + lintXml.getPath(), e);
     }
   }
 
-  private void processIssue(LintIssue lintIssue) {
-    ActiveRule rule = profile.getActiveRule(AndroidLintRulesDefinition.REPOSITORY_KEY, lintIssue.id);
-    if (rule != null) {
-      LOGGER.debug("Processing Issue: {}", lintIssue.id);
-      for (LintLocation lintLocation : lintIssue.locations) {
-        processIssueForLocation(rule, lintIssue, lintLocation);
+  /**
+   * Issues of rules which are not active are dropped by the reader as soon as their id is known. Converted reports
+   * are mapped in memory instead of being parsed.
+   */
+  private void read(File lintXml, LintReportReader.IssueHandler handler) throws IOException, XMLStreamException {
+    if (ColumnarLintReport.isColumnar(lintXml)) {
+      skipShared(lintXml);
+      ColumnarLintReport.open(lintXml).read(reportCache != null ? baseDirs() : null, activeRules, handler);
+      return;
+    }
+    LintReportReader reader = newReader();
+    File indexDir = indexDir();
+    if (settings.getBoolean(AndroidPlugin.LINT_REPORT_INDEX_PROPERTY) && indexDir != null && reader instanceof LintReportScanner
+      && LintReportFiles.isSeekable(lintXml)) {
+      skipShared(lintXml);
+      readIndexed(lintXml, indexDir, (LintReportScanner) reader, handler);
+      return;
+    }
+    ParsedLintReport report = reportCache != null ? reportCache.report(lintXml, reader, activeRules) : null;
+    if (report != null) {
+      report.replay(baseDirs(), activeRules, handler);
+      return;
+    }
+    InputStream input = LintReportFiles.open(lintXml);
+    try {
+      reader.read(input, activeRules, handler);
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  /**
+   * Only the locations in the base directory of the module, or relative ones, are processed. The report is read
+   * through its index when it has one, and indexed while being read otherwise.
+   */
+  private void readIndexed(File lintXml, File indexDir, LintReportScanner scanner, final LintReportReader.IssueHandler handler)
+    throws IOException, XMLStreamException {
+    List<File> baseDirs = baseDirs();
+    final List<String> directories = ParsedLintReport.directories(baseDirs);
+    LintReportIndex index = LintReportIndex.load(indexDir, lintXml);
+    if (index != null) {
+      long[] ranges = index.ranges(baseDirs);
+      LOGGER.debug("Reading {} byte range(s) of indexed lint report {}", ranges.length / 2, lintXml);
+      InputStream input = LintReportIndex.open(lintXml, ranges);
+      try {
+        scanner.readIssues(input, activeRules, new LintReportReader.IssueHandler() {
+          @Override
+          public void handle(LintIssue lintIssue) {
+            if (LintReportIndex.retainLocations(lintIssue, directories)) {
+              handler.handle(lintIssue);
+            }
+          }
+        });
+      } finally {
+        IOUtils.closeQuietly(input);
       }
-    } else {
-      LOGGER.warn("Unable to find rule for {}", lintIssue.id);
+      return;
+    }
+    final LintReportIndex.Builder builder = new LintReportIndex.Builder(lintXml);
+    InputStream input = LintReportFiles.open(lintXml);
+    try {
+      scanner.index(input, new LintReportScanner.RangeHandler() {
+        @Override
+        public void handle(LintIssue lintIssue, long start, long end) {
+          builder.handle(lintIssue, start, end);
+          if (activeRules.apply(lintIssue.id) && LintReportIndex.retainLocations(lintIssue, directories)) {
+            handler.handle(lintIssue);
+          }
+        }
+      });
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+    try {
+      builder.build().write(indexDir, lintXml);
+    } catch (IOException e) {
+      LOGGER.warn("Unable to write the index of lint report " + lintXml, e);
+    }
+  }
+
+  /**
+   * Indexes are kept where all the modules of the analysis find them, in the work directory of the root module, so
+   * that a report is indexed by the first module reading it. Without it, reports are not indexed, and those shared
+   * by several modules are parsed once through the cache.
+   */
+  @CheckForNull
+  private File indexDir() {
+    File workDir = reportCache != null ? reportCache.rootWorkDir() : fs.workDir();
+    return workDir == null ? null : new File(workDir, SPILL_DIR);
+  }
+
+  /**
+   * Reports shared with other modules and not read through the cache are released, so that they are not kept for
+   * this module.
+   */
+  private void skipShared(File lintXml) {
+    if (reportCache != null) {
+      try {
+        reportCache.skip(lintXml);
+      } catch (IOException e) {
+        LOGGER.debug("Unable to release lint report " + lintXml, e);
+      }
+    }
+  }
+
+  private List<File> baseDirs() {
+    File baseDir = fs.baseDir();
+    try {
+      return ImmutableList.of(baseDir.getAbsoluteFile(), baseDir.getCanonicalFile());
+    } catch (IOException e) {
+      LOGGER.debug("Unable to get canonical path of " + baseDir, e);
+      return ImmutableList.of(baseDir.getAbsoluteFile());
+    }
+  }
+
+  private LintReportReader newReader() {
+    String engine = settings.getString(AndroidPlugin.LINT_ENGINE_PROPERTY);
+    if (AndroidPlugin.LINT_ENGINE_STAX.equals(engine)) {
+      return new LintReportParser();
+    } else if (AndroidPlugin.LINT_ENGINE_MMAP.equals(engine)) {
+      return LintReportScanner.mapped();
     }
+    return new LintReportScanner();
   }
 
-  private void processIssueForLocation(ActiveRule rule, LintIssue lintIssue, LintLocation lintLocation) {
-    InputFile inputFile = fs.inputFile(fs.predicates().hasPath(lintLocation.file));
-    if (inputFile != null) {
-      LOGGER.debug("Processing File {} for Issue {}", lintLocation.file, lintIssue.id);
-      Issuable issuable = perspectives.as(Issuable.class, inputFile);
-      if (issuable != null) {
-        Issue issue = issuable.newIssueBuilder()
-          .ruleKey(rule.getRule().ruleKey())
-            .message(lintIssue.message)
-            .line(lintLocation.line)
-            .build();
-        issuable.addIssue(issue);
-        return;
+  /**
+   * Resolves the rule and the files of an issue. Safe to call from several threads at once.
+   */
+  private List<ResolvedIssue> resolve(LintIssue lintIssue) {
+    List<ResolvedIssue> issues = Lists.newArrayListWithCapacity(lintIssue.locations.size());
+    resolve(lintIssue, issues);
+    return issues;
+  }
+
+  private void resolve(LintIssue lintIssue, List<ResolvedIssue> issues) {
+    RuleKey ruleKey = activeRules.ruleKey(lintIssue.id);
+    if (ruleKey == null) {
+      LOGGER.warn("Unable to find rule for {}", lintIssue.id);
+      return;
+    }
+    LOGGER.debug("Processing Issue: {}", lintIssue.id);
+    List<LintLocation> locations = lintIssue.locations;
+    for (int i = 0; i < locations.size(); i++) {
+      LintLocation lintLocation = locations.get(i);
+      InputFile inputFile = inputFiles.inputFile(lintLocation.file);
+      if (inputFile != null) {
+        LOGGER.debug("Processing File {} for Issue {}", lintLocation.file, lintIssue.id);
+        issues.add(new ResolvedIssue(inputFile, ruleKey, lintIssue.message, lintLocation.line));
+      } else {
+        LOGGER.warn("Unable to find file {} to report issue", lintLocation.file);
       }
     }
-    LOGGER.warn("Unable to find file {} to report issue", lintLocation.file);
   }
 
-  @Root(name = "location", strict = false)
-  private static class LintLocation {
-    @Attribute
+  /**
+   * Mutable so that readers can reuse one instance per location slot: see {@link LintIssue}.
+   */
+  static class LintLocation {
     String file;
-    @Attribute(required = false)
     Integer line;
-  }
 
-  @Root(name = "issues", strict = false)
-  private static class LintIssues {
-    @ElementList(required = false, inline = true, empty = false)
-    List<LintIssue> issues;
+    LintLocation(String file, @Nullable Integer line) {
+      this.file = file;
+      this.line = line;
+    }
+
+    LintLocation copy() {
+      return new LintLocation(file, line);
+    }
   }
 
-  @Root(name = "issue", strict = false)
-  private static class LintIssue {
-    @Attribute
+  /**
+   * A reader may hand over the same instance, refilled in place, for all the issues of a report: an issue is only
+   * valid until the handler returns, and has to be {@link #copy() copied} to be kept.
+   */
+  static class LintIssue {
     String id;
-    @Attribute
     String message;
-    @ElementList(inline = true)
-    List<LintLocation> locations;
+    final List<LintLocation> locations;
+
+    LintIssue(String id, String message, List<LintLocation> locations) {
+      this.id = id;
+      this.message = message;
+      this.locations = locations;
+    }
+
+    LintIssue copy() {
+      List<LintLocation> copies = Lists.newArrayListWithCapacity(locations.size());
+      for (LintLocation location : locations) {
+        copies.add(location.copy());
+      }
+      return new LintIssue(id, message, copies);
+    }
   }
 
 }
@@ -20,18 +20,15 @@
 package org.sonar.plugins.android.lint;
 
 import com.android.tools.lint.detector.api.Severity;
-import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.common.net.MediaType;
-import org.apache.commons.lang.StringUtils;
-import org.codehaus.staxmate.SMInputFactory;
-import org.codehaus.staxmate.in.SMHierarchicCursor;
-import org.codehaus.staxmate.in.SMInputCursor;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.ElementList;
 import org.simpleframework.xml.Root;
-import org.simpleframework.xml.Serializer;
-import org.simpleframework.xml.core.Persister;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.profiles.ProfileExporter;
@@ -40,16 +37,14 @@ import org.sonar.api.rules.ActiveRule;
 import org.sonar.api.rules.RulePriority;
 
 import javax.annotation.Nullable;
-import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.StringWriter;
 import java.io.Writer;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -57,7 +52,17 @@ public class AndroidLintProfileExporter extends ProfileExporter {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(AndroidLintProfileExporter.class);
 
-  private Collection<String> ruleKeys;
+  private static final int EXPORT_CACHE_SIZE = 16;
+  private static final String LINT_ELEMENT = "lint";
+  private static final String ISSUE_ELEMENT = "issue";
+  // layout of the documents Persister used to write, kept so that exported files do not change
+  private static final String ISSUE_INDENT = "\n   ";
+  private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+  /**
+   * Exported documents by hash of the severity of each rule, most recently used last.
+   */
+  private final Map<HashCode, String> exportCache = new ExportCache();
 
   /**
    * Constructor to be used on batch side as ProfileExporter is a batch extension and thus might not
@@ -65,74 +70,100 @@ public class AndroidLintProfileExporter extends ProfileExporter {
    */
   public AndroidLintProfileExporter() {
     super(AndroidLintRulesDefinition.REPOSITORY_KEY, AndroidLintRulesDefinition.REPOSITORY_NAME);
-    ruleKeys = Lists.newArrayList();
-    loadRuleKeys();
     setSupportedLanguages("java", "xml");
     setMimeType(MediaType.XML_UTF_8.toString());
   }
 
-  private void loadRuleKeys() {
-    XMLInputFactory xmlFactory = XMLInputFactory.newInstance();
-    xmlFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
-    xmlFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
-    // just so it won't try to load DTD in if there's DOCTYPE
-    xmlFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
-    xmlFactory.setProperty(XMLInputFactory.IS_VALIDATING, Boolean.FALSE);
-    SMInputFactory inputFactory = new SMInputFactory(xmlFactory);
-    InputStream inputStream = getClass().getResourceAsStream(AndroidLintRulesDefinition.RULES_XML_PATH);
-    InputStreamReader reader = new InputStreamReader(inputStream, Charsets.UTF_8);
-    try {
-      SMHierarchicCursor rootC = inputFactory.rootElementCursor(reader);
-      rootC.advance(); // <rules>
-
-      SMInputCursor rulesC = rootC.childElementCursor("rule");
-      while (rulesC.getNext() != null) {
-        // <rule>
-        SMInputCursor cursor = rulesC.childElementCursor();
-        while (cursor.getNext() != null) {
-          if (StringUtils.equalsIgnoreCase("key", cursor.getLocalName())) {
-            String key = StringUtils.trim(cursor.collectDescendantText(false));
-            ruleKeys.add(key);
-          }
-        }
+  /**
+   * Keys of all the rules, sorted, shared by all exporters and only loaded on first export.
+   */
+  private static class RuleKeys {
+    static final List<String> KEYS = loadRuleKeys();
+
+    private static List<String> loadRuleKeys() {
+      List<String> keys = Lists.newArrayList();
+      for (RuleCatalog.Rule rule : RuleCatalog.load().rules()) {
+        keys.add(rule.key());
       }
+      return Ordering.natural().immutableSortedCopy(keys);
+    }
+  }
+
+  /**
+   * Least recently used documents are dropped past {@link #EXPORT_CACHE_SIZE} entries.
+   */
+  private static class ExportCache extends LinkedHashMap<HashCode, String> {
+    private static final long serialVersionUID = 1L;
+
+    ExportCache() {
+      super(EXPORT_CACHE_SIZE, 0.75f, true);
+    }
 
-    } catch (XMLStreamException e) {
-      throw new IllegalStateException("XML is not valid", e);
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<HashCode, String> eldest) {
+      return size() > EXPORT_CACHE_SIZE;
     }
   }
 
   @Override
   public void exportProfile(RulesProfile profile, Writer writer) {
-    Serializer serializer = new Persister();
+    Map<String, RulePriority> activeKeys = activeKeys(profile.getActiveRules());
+    HashCode hash = hash(activeKeys);
+    String document;
+    synchronized (exportCache) {
+      document = exportCache.get(hash);
+    }
     try {
-      serializer.write(createLintProfile(profile.getActiveRules()), writer);
+      if (document == null) {
+        StringWriter output = new StringWriter();
+        writeLintProfile(activeKeys, output);
+        document = output.toString();
+        synchronized (exportCache) {
+          exportCache.put(hash, document);
+        }
+      }
+      writer.write(document);
     } catch (Exception e) {
       LOGGER.error("Could not export lint profile", e);
     }
   }
 
-  private LintProfile createLintProfile(List<ActiveRule> activeRules) {
-    LintProfile profile = new LintProfile();
+  private static Map<String, RulePriority> activeKeys(List<ActiveRule> activeRules) {
     Map<String, RulePriority> activeKeys = new HashMap<>();
-    List<LintIssue> issues = Lists.newArrayList();
     for (ActiveRule rule : activeRules) {
       activeKeys.put(rule.getRuleKey(), rule.getSeverity());
     }
-    for (String ruleKey : ruleKeys) {
-      issues.add(getLintIssue(ruleKey, activeKeys));
+    return activeKeys;
+  }
+
+  /**
+   * The exported document only depends on the severity, if any, of each known rule.
+   */
+  private static HashCode hash(Map<String, RulePriority> activeKeys) {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    for (String ruleKey : RuleKeys.KEYS) {
+      RulePriority severity = activeKeys.get(ruleKey);
+      hasher.putInt(severity == null ? -1 : severity.ordinal());
     }
-    // ensure order of issues in output, sort by key.
-    Collections.sort(issues, new IssueComparator());
-    profile.issues = issues;
-    return profile;
+    return hasher.hash();
   }
 
-  private static class IssueComparator implements Comparator<LintIssue> {
-    @Override
-    public int compare(LintIssue o1, LintIssue o2) {
-      return o1.id.compareTo(o2.id);
+  /**
+   * Streams one &lt;issue&gt; per known rule, in the order of the sorted rule keys.
+   */
+  private static void writeLintProfile(Map<String, RulePriority> activeKeys, Writer writer) throws XMLStreamException {
+    XMLStreamWriter xml = XML_OUTPUT_FACTORY.createXMLStreamWriter(writer);
+    xml.writeStartElement(LINT_ELEMENT);
+    for (String ruleKey : RuleKeys.KEYS) {
+      xml.writeCharacters(ISSUE_INDENT);
+      xml.writeEmptyElement(ISSUE_ELEMENT);
+      xml.writeAttribute("id", ruleKey);
+      xml.writeAttribute("severity", lintSeverity(activeKeys.get(ruleKey)));
     }
+    xml.writeCharacters("\n");
+    xml.writeEndElement();
+    xml.flush();
+    xml.close();
   }
 
   @Root(name = "lint", strict = false)
@@ -160,28 +191,22 @@ public class AndroidLintProfileExporter extends ProfileExporter {
     }
   }
 
-  private LintIssue getLintIssue(String key, Map<String, RulePriority> activeKeys) {
-    if (!activeKeys.containsKey(key)) {
-      return new LintIssue(key, Severity.IGNORE.getDescription(), null);
-    }
-
-    String lintSeverity = "";
-    RulePriority severity = activeKeys.get(key);
-    if (severity.equals(RulePriority.BLOCKER)) {
-      lintSeverity = Severity.FATAL.getDescription();
-    }
-    if (severity.equals(RulePriority.CRITICAL)) {
-      lintSeverity = Severity.ERROR.getDescription();
-    }
-    if (severity.equals(RulePriority.MAJOR)) {
-      lintSeverity = Severity.ERROR.getDescription();
-    }
-    if (severity.equals(RulePriority.MINOR)) {
-      lintSeverity = Severity.WARNING.getDescription();
+  private static String lintSeverity(@Nullable RulePriority severity) {
+    if (severity == null) {
+      return Severity.IGNORE.getDescription();
     }
-    if (severity.equals(RulePriority.INFO)) {
-      lintSeverity = Severity.INFORMATIONAL.getDescription();
+    switch (severity) {
+      case BLOCKER:
+        return Severity.FATAL.getDescription();
+      case CRITICAL:
+      case MAJOR:
+        return Severity.ERROR.getDescription();
+      case MINOR:
+        return Severity.WARNING.getDescription();
+      case INFO:
+        return Severity.INFORMATIONAL.getDescription();
+      default:
+        return "";
     }
-    return new LintIssue(key, lintSeverity, null);
   }
 }
@@ -19,10 +19,7 @@
  */
 package org.sonar.plugins.android.lint;
 
-import com.android.tools.lint.checks.BuiltinIssueRegistry;
-import com.android.tools.lint.detector.api.Issue;
-import org.simpleframework.xml.Serializer;
-import org.simpleframework.xml.core.Persister;
+import com.google.common.collect.ImmutableMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.profiles.ProfileImporter;
@@ -36,6 +33,8 @@ import org.sonar.api.utils.ValidationMessages;
 import org.sonar.plugins.android.lint.AndroidLintProfileExporter.LintProfile;
 
 import java.io.Reader;
+import java.util.Locale;
+import java.util.Map;
 
 import static org.sonar.plugins.android.lint.AndroidLintProfileExporter.LintIssue;
 
@@ -44,7 +43,18 @@ public class AndroidLintProfileImporter extends ProfileImporter {
   private static final Logger LOGGER = LoggerFactory.getLogger(AndroidLintProfileImporter.class);
   public static final int PRIORITY_THRESHOLD = 7;
 
+  private static final Map<String, com.android.tools.lint.detector.api.Severity> LINT_SEVERITIES_BY_DESCRIPTION;
+
+  static {
+    ImmutableMap.Builder<String, com.android.tools.lint.detector.api.Severity> builder = ImmutableMap.builder();
+    for (com.android.tools.lint.detector.api.Severity severity : com.android.tools.lint.detector.api.Severity.values()) {
+      builder.put(severity.getDescription().toLowerCase(Locale.ENGLISH), severity);
+    }
+    LINT_SEVERITIES_BY_DESCRIPTION = builder.build();
+  }
+
   private final RuleFinder ruleFinder;
+  private Map<String, LintDefaults> lintDefaults;
 
   public AndroidLintProfileImporter(RuleFinder ruleFinder) {
     super(AndroidLintRulesDefinition.REPOSITORY_KEY, AndroidLintRulesDefinition.REPOSITORY_NAME);
@@ -52,21 +62,25 @@ public class AndroidLintProfileImporter extends ProfileImporter {
     setSupportedLanguages("java", "xml");
   }
 
+  /**
+   * The schema of lint.xml is scanned by the first import, not when the server starts, and then kept by the shared
+   * serializer.
+   */
   @Override
   public RulesProfile importProfile(Reader reader, ValidationMessages messages) {
-    Serializer serializer = new Persister();
     RulesProfile rulesProfile = RulesProfile.create();
     try {
-      LintProfile lintProfile = serializer.read(LintProfile.class, reader);
+      LintProfile lintProfile = XmlBinding.serializer().read(LintProfile.class, reader);
+      Map<String, LintDefaults> lintDefaults = lintDefaults();
       for (LintIssue lintIssue : lintProfile.issues) {
         Rule rule = ruleFinder.findByKey(RuleKey.of(AndroidLintRulesDefinition.REPOSITORY_KEY, lintIssue.id));
-        if (rule == null) {
+        LintDefaults defaults = lintDefaults.get(lintIssue.id);
+        if (rule == null || defaults == null) {
           messages.addWarningText("Rule " + lintIssue.id + " is unknown and has been skipped");
         } else {
-          Issue issue = new BuiltinIssueRegistry().getIssue(lintIssue.id);
-          com.android.tools.lint.detector.api.Severity lintSeverity = getLintSeverity(lintIssue, issue, messages);
+          com.android.tools.lint.detector.api.Severity lintSeverity = getLintSeverity(lintIssue, defaults, messages);
           if (!isIgnored(lintSeverity)) {
-            int priority = lintIssue.priority != null ? lintIssue.priority : issue.getPriority();
+            int priority = lintIssue.priority != null ? lintIssue.priority : defaults.priority;
             RulePriority rulePriority = RulePriority.valueOf(getSeverity(lintIssue, lintSeverity, priority));
             rulesProfile.activateRule(rule, rulePriority);
           }
@@ -79,6 +93,21 @@ public class AndroidLintProfileImporter extends ProfileImporter {
     return rulesProfile;
   }
 
+  /**
+   * Default severities and priorities come from the catalog snapshot of the lint registry, so that importing a profile
+   * does not load the lint checks. Only those are kept, not the rest of the catalog.
+   */
+  private synchronized Map<String, LintDefaults> lintDefaults() {
+    if (lintDefaults == null) {
+      ImmutableMap.Builder<String, LintDefaults> builder = ImmutableMap.builder();
+      for (RuleCatalog.Rule rule : RuleCatalog.load().rules()) {
+        builder.put(rule.key(), new LintDefaults(rule.lintSeverity(), rule.lintPriority()));
+      }
+      lintDefaults = builder.build();
+    }
+    return lintDefaults;
+  }
+
   private static boolean isIgnored(com.android.tools.lint.detector.api.Severity lintSeverity) {
     return com.android.tools.lint.detector.api.Severity.IGNORE.equals(lintSeverity);
   }
@@ -111,24 +140,29 @@ public class AndroidLintProfileImporter extends ProfileImporter {
     return result;
   }
 
-  private static com.android.tools.lint.detector.api.Severity getLintSeverity(LintIssue lintIssue, Issue issue, ValidationMessages messages) {
+  private static com.android.tools.lint.detector.api.Severity getLintSeverity(LintIssue lintIssue, LintDefaults defaults, ValidationMessages messages) {
     com.android.tools.lint.detector.api.Severity lintSeverity = null;
     if (lintIssue.severity != null) {
-      for (com.android.tools.lint.detector.api.Severity severity : com.android.tools.lint.detector.api.Severity.values()) {
-        if (lintIssue.severity.equalsIgnoreCase(severity.getDescription())) {
-          lintSeverity = severity;
-          break;
-        }
-      }
+      lintSeverity = LINT_SEVERITIES_BY_DESCRIPTION.get(lintIssue.severity.toLowerCase(Locale.ENGLISH));
       if (lintSeverity == null) {
         LOGGER.warn("Severity not found in Android Lint severities");
         messages.addWarningText("Could not recognize severity " + lintIssue.severity + " for rule " + lintIssue.id + " default severity is used");
       }
     }
     if (lintSeverity == null) {
-      lintSeverity = issue.getDefaultSeverity();
+      lintSeverity = defaults.severity;
     }
     return lintSeverity;
   }
 
+  private static final class LintDefaults {
+    private final com.android.tools.lint.detector.api.Severity severity;
+    private final int priority;
+
+    private LintDefaults(com.android.tools.lint.detector.api.Severity severity, int priority) {
+      this.severity = severity;
+      this.priority = priority;
+    }
+  }
+
 }
@@ -19,38 +19,20 @@
  */
 package org.sonar.plugins.android.lint;
 
-import com.google.common.base.Charsets;
-import org.apache.commons.io.IOUtils;
 import org.sonar.api.server.rule.RulesDefinition;
-import org.sonar.api.server.rule.RulesDefinitionXmlLoader;
-import org.sonar.squidbridge.rules.SqaleXmlLoader;
-
-import java.io.InputStream;
-import java.io.InputStreamReader;
 
+/**
+ * Defines the android lint rules and their remediation model from the {@link RuleCatalog} compiled at build time.
+ */
 public class AndroidLintRulesDefinition implements RulesDefinition {
 
   public static final String REPOSITORY_KEY = "android-lint";
   public static final String REPOSITORY_NAME = "Android Lint";
-  public static final String RULES_XML_PATH = "/org/sonar/plugins/android/lint/rules.xml";
-
-  private RulesDefinitionXmlLoader xmlLoader;
-
-  public AndroidLintRulesDefinition(RulesDefinitionXmlLoader xmlLoader) {
-    this.xmlLoader = xmlLoader;
-  }
 
   @Override
   public void define(Context context) {
     NewRepository repository = context.createRepository(REPOSITORY_KEY, "java").setName(REPOSITORY_NAME);
-    InputStream inputStream = getClass().getResourceAsStream(RULES_XML_PATH);
-    InputStreamReader reader = new InputStreamReader(inputStream, Charsets.UTF_8);
-    try {
-      xmlLoader.load(repository, reader);
-      SqaleXmlLoader.load(repository, "/org/sonar/plugins/android/lint/java-model.xml");
-      repository.done();
-    } finally {
-      IOUtils.closeQuietly(reader);
-    }
+    RuleCatalog.load().define(repository);
+    repository.done();
   }
 }
@@ -31,6 +31,7 @@ import org.sonar.api.resources.Project;
 import org.sonar.plugins.android.AndroidPlugin;
 
 import java.io.File;
+import java.util.List;
 
 public class AndroidLintSensor implements Sensor {
   private static final Logger LOGGER = LoggerFactory.getLogger(AndroidLintSensor.class);
@@ -38,37 +39,46 @@ public class AndroidLintSensor implements Sensor {
   private RulesProfile profile;
   private final ResourcePerspectives perspectives;
   private FileSystem fs;
+  private final Settings settings;
+  private final LintReportCache reportCache;
 
-  private final File lintReport;
+  private List<File> lintReports;
 
   public AndroidLintSensor(Settings settings, RulesProfile profile, ResourcePerspectives perspectives, FileSystem fs) {
+    this(settings, profile, perspectives, fs, new LintReportCache());
+  }
+
+  public AndroidLintSensor(Settings settings, RulesProfile profile, ResourcePerspectives perspectives, FileSystem fs,
+    LintReportCache reportCache) {
     this.profile = profile;
     this.perspectives = perspectives;
     this.fs = fs;
-    this.lintReport = getFile(settings.getString(AndroidPlugin.LINT_REPORT_PROPERTY));
+    this.settings = settings;
+    this.reportCache = reportCache;
   }
 
+  /**
+   * In a multi-module analysis, reports read by several modules are parsed once and shared by them. Other reports are
+   * streamed.
+   */
   @Override
   public void analyse(Project project, SensorContext sensorContext) {
-    new AndroidLintProcessor(profile, perspectives, fs).process(lintReport);
+    boolean multiModule = project.getParent() != null || !project.getModules().isEmpty();
+    new AndroidLintProcessor(profile, perspectives, fs, settings, multiModule ? reportCache : null).process(lintReports());
   }
 
   @Override
   public boolean shouldExecuteOnProject(Project project) {
-    return lintReport != null && lintReport.exists();
+    return !lintReports().isEmpty();
   }
 
-  private File getFile(String path) {
-    try {
-      File file = new File(path);
-      if (!file.isAbsolute()) {
-        file = new File(fs.baseDir(), path).getCanonicalFile();
+  private List<File> lintReports() {
+    if (lintReports == null) {
+      lintReports = new LintReportLocator(fs.baseDir()).locate(settings.getString(AndroidPlugin.LINT_REPORT_PROPERTY));
+      if (lintReports.isEmpty()) {
+        LOGGER.debug("Lint report not found, please set {} property to a correct value.", AndroidPlugin.LINT_REPORT_PROPERTY);
       }
-      return file;
-    } catch (Exception e) {
-      LOGGER.warn("Lint report not found, please set {} property to a correct value.", AndroidPlugin.LINT_REPORT_PROPERTY);
-      LOGGER.warn("Unable to resolve path : "+path, e);
     }
-    return null;
+    return lintReports;
   }
 }
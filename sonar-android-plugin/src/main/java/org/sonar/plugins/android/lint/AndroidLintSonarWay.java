@@ -19,34 +19,35 @@
  */
 package org.sonar.plugins.android.lint;
 
-import com.google.common.base.Charsets;
-import org.apache.commons.io.IOUtils;
 import org.sonar.api.profiles.ProfileDefinition;
 import org.sonar.api.profiles.RulesProfile;
-import org.sonar.api.profiles.XMLProfileParser;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.utils.ValidationMessages;
 
-import java.io.InputStream;
-import java.io.InputStreamReader;
-
+/**
+ * Default profile, read from the {@link RuleCatalog} compiled at build time.
+ */
 public class AndroidLintSonarWay extends ProfileDefinition {
 
-  public static final String PROFILE_XML_PATH = "/org/sonar/plugins/android/lint/android_lint_sonar_way.xml";
-
-  private final XMLProfileParser parser;
+  private final RuleFinder ruleFinder;
 
-  public AndroidLintSonarWay(XMLProfileParser parser) {
-    this.parser = parser;
+  public AndroidLintSonarWay(RuleFinder ruleFinder) {
+    this.ruleFinder = ruleFinder;
   }
 
   @Override
   public RulesProfile createProfile(ValidationMessages validationMessages) {
-    InputStream input = getClass().getResourceAsStream(PROFILE_XML_PATH);
-    InputStreamReader reader = new InputStreamReader(input, Charsets.UTF_8);
-    try {
-      return parser.parse(reader, validationMessages);
-    } finally {
-      IOUtils.closeQuietly(reader);
+    RuleCatalog catalog = RuleCatalog.load();
+    RulesProfile profile = RulesProfile.create(catalog.profileName(), catalog.profileLanguage());
+    for (String ruleKey : catalog.profileRuleKeys()) {
+      Rule rule = ruleFinder.findByKey(AndroidLintRulesDefinition.REPOSITORY_KEY, ruleKey);
+      if (rule == null) {
+        validationMessages.addWarningText("Rule not found: [repository=" + AndroidLintRulesDefinition.REPOSITORY_KEY + ", key=" + ruleKey + "]");
+      } else {
+        profile.activateRule(rule, null);
+      }
     }
+    return profile;
   }
 }
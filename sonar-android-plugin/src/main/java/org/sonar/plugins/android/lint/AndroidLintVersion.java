@@ -31,26 +31,36 @@ public enum AndroidLintVersion {
 
   private static final String PROPERTIES_PATH = "/org/sonar/plugins/android/lint/android-plugin.properties";
   private String version;
+  private String pluginVersion;
 
   AndroidLintVersion() {
     this.version = readVersion(PROPERTIES_PATH);
+    this.pluginVersion = readProperty(PROPERTIES_PATH, "plugin.version");
   }
 
   public static String getVersion() {
     return INSTANCE.version;
   }
 
+  public static String getPluginVersion() {
+    return INSTANCE.pluginVersion;
+  }
+
 
   @VisibleForTesting
   static String readVersion(String propertyPath) {
+    return readProperty(propertyPath, "lint.version");
+  }
+
+  private static String readProperty(String propertyPath, String key) {
     InputStream input = AndroidLintVersion.class.getResourceAsStream(propertyPath);
     try {
       Properties properties = new Properties();
       properties.load(input);
-      return properties.getProperty("lint.version");
+      return properties.getProperty(key);
 
     } catch (Exception e) {
-      LoggerFactory.getLogger(AndroidLintVersion.class).warn("Can not load the Android Lint version from the file " + propertyPath, e);
+      LoggerFactory.getLogger(AndroidLintVersion.class).warn("Can not load " + key + " from the file " + propertyPath, e);
       return "";
 
     } finally {
@@ -0,0 +1,123 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import javax.annotation.CheckForNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Strings decoded from byte ranges, looked up by the raw bytes before anything is decoded or allocated, so that
+ * values repeated throughout a report (rule ids, file paths, messages) are decoded once and share one instance.
+ * Values longer than {@link #MAX_KEY_LENGTH} bytes are not kept, and the table stops growing once it holds
+ * {@link #MAX_ENTRIES} values. Not thread-safe: meant to live as long as the reading of one report.
+ */
+class ByteStringTable {
+
+  static final int MAX_KEY_LENGTH = 512;
+  static final int MAX_ENTRIES = 1 << 16;
+
+  private byte[][] keys = new byte[256][];
+  private int[] hashes = new int[256];
+  private String[] values = new String[256];
+  private int size;
+
+  static int hash(ByteBuffer buffer, int from, int to) {
+    int hash = 1;
+    for (int i = from; i < to; i++) {
+      hash = 31 * hash + buffer.get(i);
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  @CheckForNull
+  String get(ByteBuffer buffer, int from, int to, int hash) {
+    if (to - from > MAX_KEY_LENGTH) {
+      return null;
+    }
+    int mask = keys.length - 1;
+    for (int slot = hash & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+      if (hashes[slot] == hash && equals(keys[slot], buffer, from, to)) {
+        return values[slot];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Keeps the value decoded from the given bytes, which must not already be in the table.
+   */
+  void put(ByteBuffer buffer, int from, int to, int hash, String value) {
+    if (to - from > MAX_KEY_LENGTH || size >= MAX_ENTRIES) {
+      return;
+    }
+    byte[] key = new byte[to - from];
+    for (int i = from; i < to; i++) {
+      key[i - from] = buffer.get(i);
+    }
+    insert(key, hash, value);
+    size++;
+    if (size * 2 > keys.length) {
+      rehash();
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  private void insert(byte[] key, int hash, String value) {
+    int mask = keys.length - 1;
+    int slot = hash & mask;
+    while (keys[slot] != null) {
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    hashes[slot] = hash;
+    values[slot] = value;
+  }
+
+  private void rehash() {
+    byte[][] previousKeys = keys;
+    int[] previousHashes = hashes;
+    String[] previousValues = values;
+    keys = new byte[previousKeys.length * 2][];
+    hashes = new int[keys.length];
+    values = new String[keys.length];
+    for (int i = 0; i < previousKeys.length; i++) {
+      if (previousKeys[i] != null) {
+        insert(previousKeys[i], previousHashes[i], previousValues[i]);
+      }
+    }
+  }
+
+  private static boolean equals(byte[] key, ByteBuffer buffer, int from, int to) {
+    if (key.length != to - from) {
+      return false;
+    }
+    for (int i = 0; i < key.length; i++) {
+      if (key[i] != buffer.get(from + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.rule.RuleKey;
+
+import javax.annotation.CheckForNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolved issues held as columns of ints: file, rule, line and message are indexes in tables of distinct values,
+ * so that an issue costs 16 bytes and no object. Columns grow by chunks, never copying the rows already stored.
+ * Grouping by file is a counting sort over the file column. Files and rules keep their indexes when rows are
+ * cleared, messages are forgotten with the rows. Not thread-safe.
+ */
+class ColumnarIssueStore {
+
+  private static final int CHUNK_BITS = 14;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+  private static final int BYTES_PER_ROW = 4 * 4;
+  // String, its characters and its table entries
+  private static final int MESSAGE_OVERHEAD = 96;
+
+  private final Table<InputFile> files = new Table<InputFile>();
+  private final Table<RuleKey> rules = new Table<RuleKey>();
+  private final Table<String> messages = new Table<String>();
+  private final IntColumn fileColumn = new IntColumn();
+  private final IntColumn ruleColumn = new IntColumn();
+  private final IntColumn lineColumn = new IntColumn();
+  private final IntColumn messageColumn = new IntColumn();
+  private long messageBytes;
+  private int size;
+
+  void add(ResolvedIssue issue) {
+    fileColumn.set(size, files.id(issue.inputFile));
+    ruleColumn.set(size, rules.id(issue.ruleKey));
+    lineColumn.set(size, issue.line == null ? ResolvedIssue.NO_LINE : issue.line);
+    messageColumn.set(size, messageId(issue.message));
+    size++;
+  }
+
+  int size() {
+    return size;
+  }
+
+  InputFile file(int row) {
+    return files.value(fileColumn.get(row));
+  }
+
+  int fileId(int row) {
+    return fileColumn.get(row);
+  }
+
+  InputFile fileById(int fileId) {
+    return files.value(fileId);
+  }
+
+  RuleKey rule(int row) {
+    return rules.value(ruleColumn.get(row));
+  }
+
+  int ruleId(int row) {
+    return ruleColumn.get(row);
+  }
+
+  RuleKey ruleById(int ruleId) {
+    return rules.value(ruleId);
+  }
+
+  String message(int row) {
+    return messages.value(messageColumn.get(row));
+  }
+
+  @CheckForNull
+  Integer line(int row) {
+    int line = lineColumn.get(row);
+    return line == ResolvedIssue.NO_LINE ? null : line;
+  }
+
+  /**
+   * Rows ordered by file index, rows of the same file keeping their order.
+   */
+  int[] rowsByFile() {
+    int[] starts = new int[files.size() + 1];
+    for (int row = 0; row < size; row++) {
+      starts[fileColumn.get(row) + 1]++;
+    }
+    for (int file = 1; file < starts.length; file++) {
+      starts[file] += starts[file - 1];
+    }
+    int[] rows = new int[size];
+    for (int row = 0; row < size; row++) {
+      rows[starts[fileColumn.get(row)]++] = row;
+    }
+    return rows;
+  }
+
+  /**
+   * Estimated heap taken by the rows and the message table.
+   */
+  long estimatedBytes() {
+    return (long) size * BYTES_PER_ROW + messageBytes;
+  }
+
+  /**
+   * Removes the rows and forgets their messages, files and rules keeping their indexes.
+   */
+  void clearWithMessages() {
+    size = 0;
+    messages.clear();
+    messageBytes = 0;
+  }
+
+  private int messageId(String message) {
+    int count = messages.size();
+    int id = messages.id(message);
+    if (id == count) {
+      messageBytes += MESSAGE_OVERHEAD + 2L * message.length();
+    }
+    return id;
+  }
+
+  private static class Table<T> {
+    private final Map<T, Integer> ids = Maps.newHashMap();
+    private final List<T> values = Lists.newArrayList();
+
+    int id(T value) {
+      Integer id = ids.get(value);
+      if (id == null) {
+        id = values.size();
+        ids.put(value, id);
+        values.add(value);
+      }
+      return id;
+    }
+
+    T value(int id) {
+      return values.get(id);
+    }
+
+    int size() {
+      return values.size();
+    }
+
+    void clear() {
+      ids.clear();
+      values.clear();
+    }
+  }
+
+  private static class IntColumn {
+    private int[][] chunks = new int[0][];
+
+    int get(int row) {
+      return chunks[row >>> CHUNK_BITS][row & CHUNK_MASK];
+    }
+
+    void set(int row, int value) {
+      int chunk = row >>> CHUNK_BITS;
+      if (chunk >= chunks.length) {
+        chunks = Arrays.copyOf(chunks, chunk + 1);
+      }
+      if (chunks[chunk] == null) {
+        chunks[chunk] = new int[CHUNK_SIZE];
+      }
+      chunks[chunk][row & CHUNK_MASK] = value;
+    }
+  }
+
+}
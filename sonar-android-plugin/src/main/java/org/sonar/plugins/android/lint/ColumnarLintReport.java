@@ -0,0 +1,359 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.io.IOUtils;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintIssue;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintLocation;
+
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLStreamException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * Binary form of a lint report, converted once from lint-results.xml and then read any number of times by
+ * mapping it in memory. Issues are split into one record per location, and records are grouped by file:
+ * <ul>
+ *   <li>a header: magic, version, number of files, records and strings, and size of the string bytes,</li>
+ *   <li>file blocks, sorted by normalized path: path string, first record and number of records,</li>
+ *   <li>records of 12 bytes: rule id string, message string and line, or -1,</li>
+ *   <li>the string table: offsets of the strings, then their UTF-8 bytes. Each distinct value is stored once.</li>
+ * </ul>
+ * Only what the processor uses is kept: explanations and other attributes of the XML report are dropped. Strings
+ * are decoded once, when first read. Each section of the file has to be smaller than 2 GB. A mapped report is
+ * not thread-safe.
+ */
+public final class ColumnarLintReport {
+
+  public static final String EXTENSION = ".lintbin";
+
+  private static final int MAGIC = 0x4C434F4C;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 32;
+  private static final int BLOCK_SIZE = 3 * 4;
+  private static final int RECORD_SIZE = 3 * 4;
+  private static final int LINE_CACHE_SIZE = 8192;
+
+  private final ByteBuffer blocks;
+  private final ByteBuffer records;
+  private final ByteBuffer stringOffsets;
+  private final ByteBuffer stringBytes;
+  private final String[] strings;
+  private final int fileCount;
+  private final int recordCount;
+
+  private ColumnarLintReport(ByteBuffer blocks, ByteBuffer records, ByteBuffer stringOffsets, ByteBuffer stringBytes,
+    int fileCount, int recordCount, int stringCount) {
+    this.blocks = blocks;
+    this.records = records;
+    this.stringOffsets = stringOffsets;
+    this.stringBytes = stringBytes;
+    this.fileCount = fileCount;
+    this.recordCount = recordCount;
+    this.strings = new String[stringCount];
+  }
+
+  static boolean isColumnar(File report) {
+    return report.getName().endsWith(EXTENSION) && LintReportFiles.isSeekable(report);
+  }
+
+  /**
+   * Maps the given converted report.
+   */
+  static ColumnarLintReport open(File report) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(report, "r");
+    try {
+      FileChannel channel = file.getChannel();
+      ByteBuffer header = map(channel, 0, HEADER_SIZE);
+      if (header.getInt() != MAGIC) {
+        throw new IOException("Not a converted lint report: " + report);
+      }
+      int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported converted lint report version " + version + ": " + report);
+      }
+      int fileCount = header.getInt();
+      int recordCount = header.getInt();
+      int stringCount = header.getInt();
+      header.getInt();
+      long stringBytesLength = header.getLong();
+      long blocksOffset = HEADER_SIZE;
+      long recordsOffset = blocksOffset + (long) fileCount * BLOCK_SIZE;
+      long stringOffsetsOffset = recordsOffset + (long) recordCount * RECORD_SIZE;
+      long stringBytesOffset = stringOffsetsOffset + (stringCount + 1L) * 8;
+      if (stringBytesOffset + stringBytesLength != channel.size()) {
+        throw new IOException("Truncated converted lint report: " + report);
+      }
+      return new ColumnarLintReport(
+        map(channel, blocksOffset, (long) fileCount * BLOCK_SIZE),
+        map(channel, recordsOffset, (long) recordCount * RECORD_SIZE),
+        map(channel, stringOffsetsOffset, (stringCount + 1L) * 8),
+        map(channel, stringBytesOffset, stringBytesLength),
+        fileCount, recordCount, stringCount);
+    } finally {
+      // mappings stay valid once the file is closed
+      file.close();
+    }
+  }
+
+  private static ByteBuffer map(FileChannel channel, long offset, long length) throws IOException {
+    if (length > Integer.MAX_VALUE) {
+      throw new IOException("Section of converted lint report larger than 2 GB at byte offset " + offset);
+    }
+    return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+  }
+
+  int size() {
+    return recordCount;
+  }
+
+  /**
+   * Hands over one issue per record passing the rule filter: all of them, or only those located in the given
+   * directories or by a relative path. The issue handed over is reused from one record to the next.
+   */
+  void read(@Nullable Collection<File> baseDirs, Predicate<String> ruleFilter, LintReportReader.IssueHandler handler) {
+    LintLocation location = new LintLocation(null, null);
+    LintIssue issue = new LintIssue(null, null, Collections.singletonList(location));
+    Integer[] lines = new Integer[LINE_CACHE_SIZE];
+    for (int block : blocks(baseDirs)) {
+      int blockOffset = block * BLOCK_SIZE;
+      location.file = string(blocks.getInt(blockOffset));
+      int first = blocks.getInt(blockOffset + 4);
+      int end = first + blocks.getInt(blockOffset + 8);
+      for (int record = first; record < end; record++) {
+        int recordOffset = record * RECORD_SIZE;
+        String ruleId = string(records.getInt(recordOffset));
+        if (!ruleFilter.apply(ruleId)) {
+          continue;
+        }
+        issue.id = ruleId;
+        issue.message = string(records.getInt(recordOffset + 4));
+        location.line = line(records.getInt(recordOffset + 8), lines);
+        handler.handle(issue);
+      }
+    }
+  }
+
+  private List<Integer> blocks(@Nullable Collection<File> baseDirs) {
+    List<Integer> selected = Lists.newArrayList();
+    if (baseDirs == null) {
+      for (int block = 0; block < fileCount; block++) {
+        selected.add(block);
+      }
+      return selected;
+    }
+    NavigableMap<String, Integer> absoluteBlocks = Maps.newTreeMap();
+    for (int block = 0; block < fileCount; block++) {
+      String path = string(blocks.getInt(block * BLOCK_SIZE));
+      if (new File(path).isAbsolute()) {
+        absoluteBlocks.put(ParsedLintReport.normalize(path), block);
+      } else {
+        selected.add(block);
+      }
+    }
+    for (String directory : ParsedLintReport.directories(baseDirs)) {
+      selected.addAll(ParsedLintReport.under(absoluteBlocks, directory));
+    }
+    Collections.sort(selected);
+    return selected;
+  }
+
+  @Nullable
+  private static Integer line(int value, Integer[] lines) {
+    if (value == ResolvedIssue.NO_LINE) {
+      return null;
+    } else if (value < 0 || value >= lines.length) {
+      return value;
+    }
+    Integer line = lines[value];
+    if (line == null) {
+      line = value;
+      lines[value] = line;
+    }
+    return line;
+  }
+
+  private String string(int id) {
+    String value = strings[id];
+    if (value == null) {
+      long start = stringOffsets.getLong(id * 8);
+      long end = stringOffsets.getLong(id * 8 + 8);
+      byte[] bytes = new byte[(int) (end - start)];
+      ByteBuffer source = stringBytes.duplicate();
+      source.position((int) start);
+      source.get(bytes);
+      value = new String(bytes, Charsets.UTF_8);
+      strings[id] = value;
+    }
+    return value;
+  }
+
+  /**
+   * Converts a lint-results.xml report, which may be compressed: see {@link LintReportFiles}.
+   *
+   * @return the number of records written, one per location of an issue
+   */
+  public static int convert(File lintXml, File output) throws IOException, XMLStreamException {
+    Converter converter = new Converter();
+    InputStream input = LintReportFiles.open(lintXml);
+    try {
+      new LintReportScanner().read(input, Predicates.<String>alwaysTrue(), converter);
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output), 64 * 1024));
+    try {
+      converter.write(data);
+    } finally {
+      data.close();
+    }
+    return converter.recordCount;
+  }
+
+  private static class Converter implements LintReportReader.IssueHandler {
+    private final Map<String, Integer> stringIds = Maps.newHashMap();
+    private final List<String> strings = Lists.newArrayList();
+    private final Map<String, Block> blocksByPath = Maps.newHashMap();
+    private int recordCount;
+
+    @Override
+    public void handle(LintIssue lintIssue) {
+      int ruleId = stringId(lintIssue.id);
+      int messageId = stringId(lintIssue.message);
+      for (LintLocation location : lintIssue.locations) {
+        add(location.file, ruleId, messageId, location.line == null ? ResolvedIssue.NO_LINE : location.line);
+      }
+    }
+
+    private void add(String path, int ruleId, int messageId, int line) {
+      Block block = blocksByPath.get(path);
+      if (block == null) {
+        block = new Block(stringId(path));
+        blocksByPath.put(path, block);
+      }
+      block.add(ruleId, messageId, line);
+      recordCount++;
+    }
+
+    private int stringId(String value) {
+      Integer id = stringIds.get(value);
+      if (id == null) {
+        id = strings.size();
+        stringIds.put(value, id);
+        strings.add(value);
+      }
+      return id;
+    }
+
+    void write(DataOutputStream data) throws IOException {
+      List<String> paths = Lists.newArrayList(blocksByPath.keySet());
+      Collections.sort(paths, new Comparator<String>() {
+        @Override
+        public int compare(String left, String right) {
+          int byNormalizedPath = ParsedLintReport.normalize(left).compareTo(ParsedLintReport.normalize(right));
+          return byNormalizedPath != 0 ? byNormalizedPath : left.compareTo(right);
+        }
+      });
+      List<byte[]> stringBytes = Lists.newArrayListWithCapacity(strings.size());
+      long stringBytesLength = 0;
+      for (String value : strings) {
+        byte[] bytes = value.getBytes(Charsets.UTF_8);
+        stringBytes.add(bytes);
+        stringBytesLength += bytes.length;
+      }
+
+      data.writeInt(MAGIC);
+      data.writeInt(VERSION);
+      data.writeInt(paths.size());
+      data.writeInt(recordCount);
+      data.writeInt(strings.size());
+      data.writeInt(0);
+      data.writeLong(stringBytesLength);
+      int firstRecord = 0;
+      for (String path : paths) {
+        Block block = blocksByPath.get(path);
+        data.writeInt(block.pathId);
+        data.writeInt(firstRecord);
+        data.writeInt(block.size);
+        firstRecord += block.size;
+      }
+      for (String path : paths) {
+        Block block = blocksByPath.get(path);
+        for (int i = 0; i < block.size * 3; i++) {
+          data.writeInt(block.records[i]);
+        }
+      }
+      long offset = 0;
+      for (byte[] bytes : stringBytes) {
+        data.writeLong(offset);
+        offset += bytes.length;
+      }
+      data.writeLong(offset);
+      for (byte[] bytes : stringBytes) {
+        data.write(bytes);
+      }
+    }
+  }
+
+  /**
+   * Records of a file, as rule, message and line triples.
+   */
+  private static class Block {
+    final int pathId;
+    int[] records = new int[4 * 3];
+    int size;
+
+    Block(int pathId) {
+      this.pathId = pathId;
+    }
+
+    void add(int ruleId, int messageId, int line) {
+      if ((size + 1) * 3 > records.length) {
+        records = Arrays.copyOf(records, records.length * 2);
+      }
+      records[size * 3] = ruleId;
+      records[size * 3 + 1] = messageId;
+      records[size * 3 + 2] = line;
+      size++;
+    }
+  }
+
+}
@@ -0,0 +1,273 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Groups resolved issues by file within a memory budget. Issues are buffered in a {@link ColumnarIssueStore} until
+ * its estimated size goes over the budget: the buffer is then written to a run file, sorted by file. Runs are
+ * merged back when draining, so that the issues of each file come out one after the other whatever their number.
+ * Files and rule keys are written as indexes in the tables of the store, which only grow with the number of
+ * distinct files and rules. Messages are written as such, and forgotten by the store after each spill.
+ * At most {@code maxFanIn} runs are read at once: past that number, runs are first merged by groups into fewer
+ * runs, in as many passes as needed. Not thread-safe.
+ */
+class ExternalIssueSorter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExternalIssueSorter.class);
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int MAX_FAN_IN = 64;
+
+  private final File spillDir;
+  private final long maxMemoryBytes;
+  private final int maxFanIn;
+  private final ColumnarIssueStore buffer = new ColumnarIssueStore();
+  private final List<File> runs = Lists.newArrayList();
+
+  interface Handler {
+    /**
+     * Called with all the issues of a file in a row.
+     */
+    void handle(ResolvedIssue issue);
+  }
+
+  ExternalIssueSorter(File spillDir, long maxMemoryBytes) {
+    this(spillDir, maxMemoryBytes, MAX_FAN_IN);
+  }
+
+  ExternalIssueSorter(File spillDir, long maxMemoryBytes, int maxFanIn) {
+    this.spillDir = spillDir;
+    this.maxMemoryBytes = maxMemoryBytes;
+    this.maxFanIn = maxFanIn;
+  }
+
+  void add(ResolvedIssue issue) throws IOException {
+    buffer.add(issue);
+    if (buffer.estimatedBytes() > maxMemoryBytes) {
+      spill();
+    }
+  }
+
+  int runs() {
+    return runs.size();
+  }
+
+  /**
+   * Hands over all the issues, grouped by file, and deletes the runs.
+   */
+  void drain(Handler handler) throws IOException {
+    try {
+      if (runs.isEmpty()) {
+        for (int row : buffer.rowsByFile()) {
+          handler.handle(new ResolvedIssue(buffer.file(row), buffer.rule(row), buffer.message(row), buffer.line(row)));
+        }
+        buffer.clearWithMessages();
+      } else {
+        spill();
+        while (runs.size() > maxFanIn) {
+          mergePass();
+        }
+        drainRuns(handler);
+      }
+    } finally {
+      for (File run : runs) {
+        FileUtils.deleteQuietly(run);
+      }
+      runs.clear();
+    }
+  }
+
+  private void spill() throws IOException {
+    if (buffer.size() == 0) {
+      return;
+    }
+    File run = newRun();
+    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), BUFFER_SIZE));
+    try {
+      for (int row : buffer.rowsByFile()) {
+        Integer line = buffer.line(row);
+        byte[] message = buffer.message(row).getBytes(Charsets.UTF_8);
+        write(output, buffer.fileId(row), buffer.ruleId(row), line == null ? ResolvedIssue.NO_LINE : line, message, message.length);
+      }
+    } finally {
+      output.close();
+    }
+    LOGGER.debug("{} lint issues spilled to {}", buffer.size(), run);
+    buffer.clearWithMessages();
+  }
+
+  /**
+   * New run file, last of the runs.
+   */
+  private File newRun() throws IOException {
+    FileUtils.forceMkdir(spillDir);
+    File run = File.createTempFile("lint-issues", ".run", spillDir);
+    runs.add(run);
+    return run;
+  }
+
+  private static void write(DataOutputStream output, int fileId, int ruleId, int line, byte[] message, int length) throws IOException {
+    output.writeInt(fileId);
+    output.writeInt(ruleId);
+    output.writeInt(line);
+    output.writeInt(length);
+    output.write(message, 0, length);
+  }
+
+  /**
+   * Replaces the runs by groups of {@code maxFanIn} runs merged together. Merged runs come last, in the order of
+   * their groups, so that the issues of a file keep their order.
+   */
+  private void mergePass() throws IOException {
+    int remaining = runs.size();
+    while (remaining > 0) {
+      int groupSize = Math.min(maxFanIn, remaining);
+      remaining -= groupSize;
+      List<File> group = Lists.newArrayList(runs.subList(0, groupSize));
+      if (groupSize == 1) {
+        runs.add(runs.remove(0));
+        continue;
+      }
+      File merged = newRun();
+      final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(merged), BUFFER_SIZE));
+      try {
+        merge(group, new RunHandler() {
+          @Override
+          public void handle(Run run) throws IOException {
+            write(output, run.fileId, run.ruleId, run.line, run.message, run.messageLength);
+          }
+        });
+      } finally {
+        output.close();
+      }
+      runs.subList(0, groupSize).clear();
+      for (File run : group) {
+        FileUtils.deleteQuietly(run);
+      }
+    }
+    LOGGER.debug("Lint issues merged into {} runs", runs.size());
+  }
+
+  private void drainRuns(final Handler handler) throws IOException {
+    merge(runs, new RunHandler() {
+      @Override
+      public void handle(Run run) {
+        handler.handle(new ResolvedIssue(buffer.fileById(run.fileId), buffer.ruleById(run.ruleId),
+          new String(run.message, 0, run.messageLength, Charsets.UTF_8), run.line == ResolvedIssue.NO_LINE ? null : run.line));
+      }
+    });
+  }
+
+  private interface RunHandler {
+    /**
+     * Called with the run positioned on the next issue.
+     */
+    void handle(Run run) throws IOException;
+  }
+
+  /**
+   * Hands over the issues of the given runs by file, issues of the same file coming in the order of the runs.
+   */
+  private static void merge(List<File> files, RunHandler handler) throws IOException {
+    PriorityQueue<Run> queue = new PriorityQueue<Run>(files.size(), new Comparator<Run>() {
+      @Override
+      public int compare(Run left, Run right) {
+        int byFile = Integer.compare(left.fileId, right.fileId);
+        return byFile != 0 ? byFile : Integer.compare(left.index, right.index);
+      }
+    });
+    List<Run> opened = Lists.newArrayList();
+    try {
+      for (int i = 0; i < files.size(); i++) {
+        Run run = new Run(files.get(i), i);
+        opened.add(run);
+        if (run.next()) {
+          queue.add(run);
+        }
+      }
+      while (!queue.isEmpty()) {
+        Run run = queue.poll();
+        handler.handle(run);
+        if (run.next()) {
+          queue.add(run);
+        }
+      }
+    } finally {
+      for (Run run : opened) {
+        IOUtils.closeQuietly(run.input);
+      }
+    }
+  }
+
+  /**
+   * Reader of a run, positioned on its current issue.
+   */
+  private static class Run {
+    final DataInputStream input;
+    final int index;
+    int fileId;
+    int ruleId;
+    int line;
+    // UTF-8 bytes of the message, decoded only when handed over
+    byte[] message = new byte[256];
+    int messageLength;
+
+    Run(File file, int index) throws IOException {
+      this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+      this.index = index;
+    }
+
+    boolean next() throws IOException {
+      try {
+        fileId = input.readInt();
+      } catch (EOFException e) {
+        return false;
+      }
+      ruleId = input.readInt();
+      line = input.readInt();
+      messageLength = input.readInt();
+      if (messageLength > message.length) {
+        message = new byte[Math.max(messageLength, message.length * 2)];
+      }
+      input.readFully(message, 0, messageLength);
+      return true;
+    }
+  }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+
+import javax.annotation.CheckForNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the paths found in lint reports to input files with a hash lookup.
+ * Relative, absolute and canonical paths of all input files are indexed once. Other paths are resolved once
+ * through the file system predicates and the result, found or not, is remembered.
+ * Safe to use from several threads at once.
+ */
+class InputFileIndex {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(InputFileIndex.class);
+
+  private final FileSystem fs;
+  private final Map<String, InputFile> inputFilesByPath;
+  private final Map<String, InputFile> resolved = new ConcurrentHashMap<String, InputFile>();
+  private final Set<String> unresolved = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  InputFileIndex(FileSystem fs) {
+    this.fs = fs;
+    Map<String, InputFile> paths = Maps.newHashMap();
+    for (InputFile inputFile : fs.inputFiles(fs.predicates().all())) {
+      index(paths, inputFile.relativePath(), inputFile);
+      String absolutePath = inputFile.absolutePath();
+      if (absolutePath != null) {
+        index(paths, absolutePath, inputFile);
+        index(paths, canonicalPath(new File(absolutePath)), inputFile);
+      }
+    }
+    this.inputFilesByPath = paths;
+    LOGGER.debug("Indexed {} paths of input files", paths.size());
+  }
+
+  private static void index(Map<String, InputFile> paths, String path, InputFile inputFile) {
+    if (path != null && !paths.containsKey(path)) {
+      paths.put(path, inputFile);
+    }
+  }
+
+  @CheckForNull
+  private static String canonicalPath(File file) {
+    try {
+      return file.getCanonicalPath();
+    } catch (IOException e) {
+      LOGGER.debug("Unable to get canonical path of " + file, e);
+      return null;
+    }
+  }
+
+  /**
+   * Relative paths of all the input files, sorted.
+   */
+  List<String> relativePaths() {
+    List<String> paths = Lists.newArrayList();
+    for (InputFile inputFile : fs.inputFiles(fs.predicates().all())) {
+      paths.add(inputFile.relativePath());
+    }
+    Collections.sort(paths);
+    return paths;
+  }
+
+  @CheckForNull
+  InputFile inputFile(String path) {
+    InputFile inputFile = inputFilesByPath.get(path);
+    if (inputFile == null) {
+      inputFile = resolved.get(path);
+    }
+    if (inputFile == null && !unresolved.contains(path)) {
+      inputFile = fs.inputFile(fs.predicates().hasPath(path));
+      if (inputFile == null) {
+        unresolved.add(path);
+      } else {
+        resolved.put(path, inputFile);
+      }
+    }
+    return inputFile;
+  }
+
+}
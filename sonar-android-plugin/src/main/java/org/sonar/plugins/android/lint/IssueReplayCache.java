@@ -0,0 +1,323 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.rule.RuleKey;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Issues resolved from the lint reports of a module, kept in its working directory so that the next analysis of
+ * the same reports replays them without reading the reports again. The cache is keyed by a hash of the contents
+ * of the reports, of the active rules, of the paths of the input files and of the version of the plugin: any change
+ * to them and the reports are processed as usual. Only the issues which were resolved are cached, hence the paths:
+ * a file added or excluded changes which issues resolve. Files, rules and messages are written once and then referred to by index, and files are
+ * resolved again, by relative path, when replayed.
+ */
+class IssueReplayCache {
+
+  static final String FILE_NAME = "resolved-issues.bin";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(IssueReplayCache.class);
+  private static final int MAGIC = 0x4C495243;
+  private static final int VERSION = 1;
+  private static final int BUFFER_SIZE = 64 * 1024;
+  // messages past this number are written inline: the table of messages is kept in memory while writing
+  private static final int MAX_MESSAGES = 1 << 16;
+  private static final int INLINE_MESSAGE = -1;
+
+  private static final byte END_RECORD = 0;
+  private static final byte FILE_RECORD = 1;
+  private static final byte RULE_RECORD = 2;
+  private static final byte MESSAGE_RECORD = 3;
+  private static final byte ISSUE_RECORD = 4;
+
+  private final File file;
+
+  IssueReplayCache(File dir) {
+    this.file = new File(dir, FILE_NAME);
+  }
+
+  /**
+   * Hash of the given reports, read as stored on disk, and of everything else the resolved issues depend on.
+   */
+  static String key(List<File> reports, List<String> activeRuleKeys, List<String> inputFilePaths, String... parameters)
+    throws IOException {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    putString(hasher, Strings.nullToEmpty(AndroidLintVersion.getPluginVersion()));
+    for (String parameter : parameters) {
+      putString(hasher, parameter);
+    }
+    hasher.putInt(activeRuleKeys.size());
+    for (String ruleKey : activeRuleKeys) {
+      putString(hasher, ruleKey);
+    }
+    hasher.putInt(inputFilePaths.size());
+    for (String path : inputFilePaths) {
+      putString(hasher, path);
+    }
+    hasher.putInt(reports.size());
+    byte[] buffer = new byte[BUFFER_SIZE];
+    for (File report : reports) {
+      putString(hasher, report.getPath());
+      File physicalFile = LintReportFiles.physicalFile(report);
+      hasher.putLong(physicalFile.length());
+      InputStream input = new FileInputStream(physicalFile);
+      try {
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+          hasher.putBytes(buffer, 0, read);
+        }
+      } finally {
+        input.close();
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  private static void putString(Hasher hasher, String value) {
+    hasher.putInt(value.length());
+    hasher.putString(value);
+  }
+
+  /**
+   * Hands over the cached issues if the cache has the given key, and returns whether it had.
+   * Issues of files which are no longer input files are dropped.
+   */
+  boolean replay(String key, InputFileIndex inputFiles, LintIssuePipeline.Emitter emitter) {
+    if (!file.isFile()) {
+      return false;
+    }
+    DataInputStream input = null;
+    try {
+      input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+      if (input.readInt() != MAGIC || input.readInt() != VERSION || !key.equals(input.readUTF())) {
+        LOGGER.debug("Lint reports or active rules changed since the previous analysis");
+        return false;
+      }
+      int replayed = replay(input, inputFiles, emitter);
+      LOGGER.info("Replayed {} lint issue(s) of the previous analysis of the same reports", replayed);
+      return true;
+    } catch (IOException e) {
+      LOGGER.warn("Unable to replay lint issues from " + file, e);
+      return false;
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  private static int replay(DataInputStream input, InputFileIndex inputFiles, LintIssuePipeline.Emitter emitter) throws IOException {
+    List<InputFile> files = Lists.newArrayList();
+    List<RuleKey> rules = Lists.newArrayList();
+    List<String> messages = Lists.newArrayList();
+    int replayed = 0;
+    while (true) {
+      byte record = input.readByte();
+      if (record == END_RECORD) {
+        return replayed;
+      } else if (record == FILE_RECORD) {
+        String path = input.readUTF();
+        InputFile inputFile = inputFiles.inputFile(path);
+        if (inputFile == null) {
+          LOGGER.warn("Unable to find file {} to report issue", path);
+        }
+        files.add(inputFile);
+      } else if (record == RULE_RECORD) {
+        rules.add(RuleKey.of(input.readUTF(), input.readUTF()));
+      } else if (record == MESSAGE_RECORD) {
+        messages.add(readMessage(input));
+      } else if (record == ISSUE_RECORD) {
+        InputFile inputFile = get(files, input.readInt());
+        RuleKey rule = get(rules, input.readInt());
+        int line = input.readInt();
+        int messageId = input.readInt();
+        String message = messageId == INLINE_MESSAGE ? readMessage(input) : get(messages, messageId);
+        if (inputFile != null) {
+          emitter.emit(new ResolvedIssue(inputFile, rule, message, line == ResolvedIssue.NO_LINE ? null : line));
+          replayed++;
+        }
+      } else {
+        throw new IOException("Unknown record " + record);
+      }
+    }
+  }
+
+  private static <T> T get(List<T> values, int id) throws IOException {
+    if (id < 0 || id >= values.size()) {
+      throw new IOException("Unknown index " + id);
+    }
+    return values.get(id);
+  }
+
+  private static String readMessage(DataInputStream input) throws IOException {
+    int length = input.readInt();
+    if (length < 0) {
+      throw new IOException("Invalid message length " + length);
+    }
+    byte[] bytes = new byte[length];
+    input.readFully(bytes);
+    return new String(bytes, Charsets.UTF_8);
+  }
+
+  /**
+   * Records the issues resolved under the given key. They replace the cached ones once committed.
+   */
+  Writer writer(String key) throws IOException {
+    FileUtils.forceMkdir(file.getParentFile());
+    File temp = File.createTempFile(FILE_NAME, ".tmp", file.getParentFile());
+    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), BUFFER_SIZE));
+    output.writeInt(MAGIC);
+    output.writeInt(VERSION);
+    output.writeUTF(key);
+    return new Writer(temp, output);
+  }
+
+  /**
+   * Not thread-safe. Failures to write are logged once, and prevent the issues from being committed.
+   */
+  class Writer implements LintIssuePipeline.Emitter {
+    private final File temp;
+    private final DataOutputStream output;
+    private final Map<InputFile, Integer> files = Maps.newHashMap();
+    private final Map<RuleKey, Integer> rules = Maps.newHashMap();
+    private final Map<String, Integer> messages = Maps.newHashMap();
+    private boolean failed;
+
+    private Writer(File temp, DataOutputStream output) {
+      this.temp = temp;
+      this.output = output;
+    }
+
+    @Override
+    public void emit(ResolvedIssue issue) {
+      if (failed) {
+        return;
+      }
+      try {
+        int fileId = fileId(issue.inputFile);
+        int ruleId = ruleId(issue.ruleKey);
+        int messageId = messageId(issue.message);
+        output.writeByte(ISSUE_RECORD);
+        output.writeInt(fileId);
+        output.writeInt(ruleId);
+        output.writeInt(issue.line == null ? ResolvedIssue.NO_LINE : issue.line);
+        output.writeInt(messageId);
+        if (messageId == INLINE_MESSAGE) {
+          writeMessage(issue.message);
+        }
+      } catch (IOException e) {
+        LOGGER.warn("Unable to record lint issues in " + temp, e);
+        failed = true;
+      }
+    }
+
+    private int fileId(InputFile inputFile) throws IOException {
+      Integer id = files.get(inputFile);
+      if (id == null) {
+        id = files.size();
+        files.put(inputFile, id);
+        output.writeByte(FILE_RECORD);
+        output.writeUTF(inputFile.relativePath());
+      }
+      return id;
+    }
+
+    private int ruleId(RuleKey ruleKey) throws IOException {
+      Integer id = rules.get(ruleKey);
+      if (id == null) {
+        id = rules.size();
+        rules.put(ruleKey, id);
+        output.writeByte(RULE_RECORD);
+        output.writeUTF(ruleKey.repository());
+        output.writeUTF(ruleKey.rule());
+      }
+      return id;
+    }
+
+    private int messageId(String message) throws IOException {
+      Integer id = messages.get(message);
+      if (id == null) {
+        if (messages.size() == MAX_MESSAGES) {
+          return INLINE_MESSAGE;
+        }
+        id = messages.size();
+        messages.put(message, id);
+        output.writeByte(MESSAGE_RECORD);
+        writeMessage(message);
+      }
+      return id;
+    }
+
+    private void writeMessage(String message) throws IOException {
+      byte[] bytes = message.getBytes(Charsets.UTF_8);
+      output.writeInt(bytes.length);
+      output.write(bytes);
+    }
+
+    /**
+     * Replaces the cached issues with the recorded ones, unless recording failed.
+     */
+    void commit() {
+      try {
+        if (!failed) {
+          output.writeByte(END_RECORD);
+          output.close();
+          Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+      } catch (IOException e) {
+        LOGGER.warn("Unable to write lint issue cache " + file, e);
+      } finally {
+        abort();
+      }
+    }
+
+    /**
+     * Drops the recorded issues.
+     */
+    void abort() {
+      IOUtils.closeQuietly(output);
+      FileUtils.deleteQuietly(temp);
+    }
+  }
+
+}
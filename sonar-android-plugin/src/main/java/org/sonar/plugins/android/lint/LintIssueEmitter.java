@@ -0,0 +1,193 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.issue.Issuable;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.rule.RuleKey;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Reports resolved issues grouped by file, so that the issuable of a file is looked up once per batch instead of
+ * once per issue. At most {@code batchSize} issues are buffered, in a {@link ColumnarIssueStore}, before being
+ * reported.
+ * The same finding coming from several reports (build variants, or app and library reports) is reported once:
+ * the fingerprints of the emitted issues are kept in a primitive set. So is the same finding listed several times in
+ * one report, for instance at several columns of a line, since issues have no column.
+ * <p>
+ * With a memory budget, issues are instead sorted by file, spilling to disk past the budget, and all the issues of
+ * a file are reported in a row when flushing: the issuable of a file is looked up once, and duplicates are only
+ * looked for among the issues of the same file.
+ * Not thread-safe: to be used from the thread allowed to call perspectives.
+ */
+class LintIssueEmitter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LintIssueEmitter.class);
+  private static final int EXPECTED_ISSUES = 1024;
+
+  private final ResourcePerspectives perspectives;
+  private final int batchSize;
+  private final ColumnarIssueStore store;
+  private final LongHashSet fingerprints;
+  private final ExternalIssueSorter sorter;
+  private int duplicates;
+
+  LintIssueEmitter(ResourcePerspectives perspectives, int batchSize) {
+    this.perspectives = perspectives;
+    this.batchSize = batchSize;
+    this.store = new ColumnarIssueStore();
+    this.fingerprints = new LongHashSet(EXPECTED_ISSUES);
+    this.sorter = null;
+  }
+
+  /**
+   * @param spillDir where issues go past {@code maxMemoryBytes}, deleted when flushing
+   */
+  LintIssueEmitter(ResourcePerspectives perspectives, long maxMemoryBytes, File spillDir) {
+    this.perspectives = perspectives;
+    this.batchSize = Integer.MAX_VALUE;
+    this.store = null;
+    this.fingerprints = null;
+    this.sorter = new ExternalIssueSorter(spillDir, maxMemoryBytes);
+  }
+
+  void emit(ResolvedIssue issue) {
+    if (sorter != null) {
+      try {
+        sorter.add(issue);
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to spill lint issues to disk", e);
+      }
+      return;
+    }
+    if (!fingerprints.add(issue.fingerprint())) {
+      duplicates++;
+      return;
+    }
+    store.add(issue);
+    if (store.size() >= batchSize) {
+      flush();
+    }
+  }
+
+  void flush() {
+    if (sorter != null) {
+      FileByFileReporter reporter = new FileByFileReporter();
+      try {
+        sorter.drain(reporter);
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to read lint issues spilled to disk", e);
+      } finally {
+        reporter.endOfFile();
+      }
+      return;
+    }
+    int[] rows = store.rowsByFile();
+    int from = 0;
+    while (from < rows.length) {
+      int fileId = store.fileId(rows[from]);
+      int to = from + 1;
+      while (to < rows.length && store.fileId(rows[to]) == fileId) {
+        to++;
+      }
+      report(rows, from, to);
+      from = to;
+    }
+    store.clearWithMessages();
+  }
+
+  void logDuplicateIssues() {
+    if (duplicates > 0) {
+      LOGGER.info("{} duplicate issue(s) removed", duplicates);
+    }
+  }
+
+  int duplicates() {
+    return duplicates;
+  }
+
+  /**
+   * Reports the rows {@code rows[from]} to {@code rows[to - 1]}, which are all in the same file.
+   */
+  private void report(int[] rows, int from, int to) {
+    InputFile inputFile = store.file(rows[from]);
+    Issuable issuable = perspectives.as(Issuable.class, inputFile);
+    if (issuable == null) {
+      LOGGER.warn("Unable to find file {} to report {} issues", inputFile.relativePath(), to - from);
+      return;
+    }
+    for (int i = from; i < to; i++) {
+      int row = rows[i];
+      addIssue(issuable, store.rule(row), store.message(row), store.line(row));
+    }
+  }
+
+  private static void addIssue(Issuable issuable, RuleKey ruleKey, String message, @Nullable Integer line) {
+    Issue issue = issuable.newIssueBuilder()
+      .ruleKey(ruleKey)
+        .message(message)
+        .line(line)
+        .build();
+    issuable.addIssue(issue);
+  }
+
+  /**
+   * Reports the issues handed over file after file, removing the duplicates of each file.
+   */
+  private class FileByFileReporter implements ExternalIssueSorter.Handler {
+    private InputFile inputFile;
+    private Issuable issuable;
+    private LongHashSet fileFingerprints;
+    private int skipped;
+
+    @Override
+    public void handle(ResolvedIssue issue) {
+      if (!issue.inputFile.equals(inputFile)) {
+        endOfFile();
+        inputFile = issue.inputFile;
+        issuable = perspectives.as(Issuable.class, inputFile);
+        fileFingerprints = new LongHashSet(EXPECTED_ISSUES);
+      }
+      if (!fileFingerprints.add(issue.fingerprint())) {
+        duplicates++;
+      } else if (issuable == null) {
+        skipped++;
+      } else {
+        addIssue(issuable, issue.ruleKey, issue.message, issue.line);
+      }
+    }
+
+    void endOfFile() {
+      if (skipped > 0) {
+        LOGGER.warn("Unable to find file {} to report {} issues", inputFile.relativePath(), skipped);
+      }
+      skipped = 0;
+    }
+  }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintIssue;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs report reading, issue resolution and issue emission concurrently:
+ * <ul>
+ *   <li>reader threads read the reports, one at a time each, and all feed a bounded queue of lint issues,</li>
+ *   <li>a pool of workers resolves their rule and files and feeds a bounded queue of resolved issues,</li>
+ *   <li>the calling thread emits the resolved issues, as perspectives and issuables are not thread-safe.</li>
+ * </ul>
+ * Bounded queues block the faster stages, so that memory stays bounded whatever the size of the report.
+ */
+class LintIssuePipeline {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LintIssuePipeline.class);
+  private static final int QUEUE_CAPACITY = 1024;
+  private static final int MAX_READERS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+  private static final LintIssue END_OF_ISSUES = new LintIssue("", "", ImmutableList.<AndroidLintProcessor.LintLocation>of());
+  private static final List<ResolvedIssue> END_OF_RESOLVED = ImmutableList.of();
+
+  interface Source {
+    void read(LintReportReader.IssueHandler handler) throws Exception;
+  }
+
+  interface Resolver {
+    List<ResolvedIssue> resolve(LintIssue lintIssue);
+  }
+
+  interface Emitter {
+    void emit(ResolvedIssue issue);
+  }
+
+  private final int workers;
+
+  LintIssuePipeline(int workers) {
+    this.workers = workers;
+  }
+
+  void run(Source source, Resolver resolver, Emitter emitter) throws Exception {
+    run(ImmutableList.of(source), resolver, emitter);
+  }
+
+  /**
+   * Issues of all the sources are merged before being resolved and emitted.
+   */
+  void run(List<Source> sources, final Resolver resolver, Emitter emitter) throws Exception {
+    final BlockingQueue<LintIssue> lintIssues = new ArrayBlockingQueue<LintIssue>(QUEUE_CAPACITY);
+    final BlockingQueue<List<ResolvedIssue>> resolvedIssues = new ArrayBlockingQueue<List<ResolvedIssue>>(QUEUE_CAPACITY);
+    final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+    final Queue<Source> pendingSources = new ConcurrentLinkedQueue<Source>(sources);
+    int readers = Math.max(1, Math.min(sources.size(), MAX_READERS));
+    final AtomicInteger runningReaders = new AtomicInteger(readers);
+    final LintReportReader.IssueHandler handler = new LintReportReader.IssueHandler() {
+      @Override
+      public void handle(LintIssue lintIssue) {
+        if (failure.get() != null) {
+          throw new IllegalStateException("Lint issues pipeline aborted");
+        }
+        // readers reuse the issue they hand over
+        put(lintIssues, lintIssue.copy());
+      }
+    };
+    ExecutorService executor = Executors.newFixedThreadPool(workers + readers);
+    try {
+      for (int reader = 0; reader < readers; reader++) {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              Source source = pendingSources.poll();
+              while (source != null && failure.get() == null) {
+                source.read(handler);
+                source = pendingSources.poll();
+              }
+            } catch (Exception e) {
+              failure.compareAndSet(null, e);
+            } finally {
+              // the last reader to complete tells the workers there is nothing left
+              if (runningReaders.decrementAndGet() == 0) {
+                for (int i = 0; i < workers; i++) {
+                  put(lintIssues, END_OF_ISSUES);
+                }
+              }
+            }
+          }
+        });
+      }
+      for (int i = 0; i < workers; i++) {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              LintIssue lintIssue = take(lintIssues);
+              while (lintIssue != END_OF_ISSUES) {
+                resolve(lintIssue);
+                lintIssue = take(lintIssues);
+              }
+            } finally {
+              put(resolvedIssues, END_OF_RESOLVED);
+            }
+          }
+
+          private void resolve(LintIssue lintIssue) {
+            if (failure.get() == null) {
+              try {
+                put(resolvedIssues, resolver.resolve(lintIssue));
+              } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+              }
+            }
+          }
+        });
+      }
+      emit(resolvedIssues, emitter, failure);
+    } finally {
+      executor.shutdownNow();
+    }
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+  }
+
+  /**
+   * Emits on the calling thread until every worker is done. After a failure the queue is still drained so that
+   * no stage stays blocked.
+   */
+  private void emit(BlockingQueue<List<ResolvedIssue>> resolvedIssues, Emitter emitter, AtomicReference<Exception> failure) {
+    int running = workers;
+    while (running > 0) {
+      List<ResolvedIssue> batch = take(resolvedIssues);
+      if (batch == END_OF_RESOLVED) {
+        running--;
+      } else if (failure.get() == null) {
+        try {
+          for (ResolvedIssue issue : batch) {
+            emitter.emit(issue);
+          }
+        } catch (RuntimeException e) {
+          failure.compareAndSet(null, e);
+        }
+      }
+    }
+    LOGGER.debug("Lint issues pipeline completed with {} workers", workers);
+  }
+
+  private static <T> void put(BlockingQueue<T> queue, T element) {
+    try {
+      queue.put(element);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while queuing lint issues", e);
+    }
+  }
+
+  private static <T> T take(BlockingQueue<T> queue) {
+    try {
+      return queue.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for lint issues", e);
+    }
+  }
+
+}
@@ -0,0 +1,217 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Maps;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchComponent;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.plugins.android.AndroidPlugin;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLStreamException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lint reports parsed during the analysis, shared by its modules: a report several modules point at is parsed once
+ * instead of once per module, and forgotten once the last of them read or skipped it. Reports read by a single module are not
+ * kept, and are streamed by that module. Modules are counted from the project reactor, before the first report is
+ * read. Only the issues of active rules are kept. A report is parsed again if the modification time or size of its
+ * file, or of its archive, changed.
+ * Safe to use from several threads at once: different reports are parsed in parallel, and a report being parsed is
+ * waited for.
+ */
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class LintReportCache implements BatchComponent {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LintReportCache.class);
+
+  private final ProjectReactor reactor;
+  private final ConcurrentMap<String, FutureTask<Entry>> reportsByCanonicalPath = new ConcurrentHashMap<String, FutureTask<Entry>>();
+  private volatile Map<String, AtomicInteger> remainingReadsByCanonicalPath;
+
+  /**
+   * Without reactor, no report is shared.
+   */
+  public LintReportCache() {
+    this(null);
+  }
+
+  public LintReportCache(@Nullable ProjectReactor reactor) {
+    this.reactor = reactor;
+  }
+
+  /**
+   * Work directory of the root module, shared by all the modules of the analysis, or null without reactor.
+   */
+  @CheckForNull
+  File rootWorkDir() {
+    return reactor == null ? null : reactor.getRoot().getWorkDir();
+  }
+
+  /**
+   * The parsed report when other modules read it too, null when the report is to be streamed.
+   */
+  @CheckForNull
+  ParsedLintReport report(final File lintXml, final LintReportReader reader, final ActiveRuleIndex activeRules)
+    throws IOException, XMLStreamException {
+    String path = lintXml.getCanonicalPath();
+    if (isLastRead(path)) {
+      FutureTask<Entry> task = reportsByCanonicalPath.remove(path);
+      Entry entry = task == null ? null : get(task);
+      return entry != null && entry.isValid(lintXml, activeRules) ? entry.report : null;
+    }
+    while (true) {
+      FutureTask<Entry> task = reportsByCanonicalPath.get(path);
+      if (task != null) {
+        Entry entry = get(task);
+        if (entry.isValid(lintXml, activeRules)) {
+          LOGGER.debug("Reusing the {} issue(s) of lint report {}", entry.report.size(), path);
+          return entry.report;
+        }
+      }
+      FutureTask<Entry> parsing = new FutureTask<Entry>(new Callable<Entry>() {
+        @Override
+        public Entry call() throws IOException, XMLStreamException {
+          return parse(lintXml, reader, activeRules);
+        }
+      });
+      // otherwise another thread is parsing the report: wait for it
+      if (task == null ? reportsByCanonicalPath.putIfAbsent(path, parsing) == null : reportsByCanonicalPath.replace(path, task, parsing)) {
+        parsing.run();
+        boolean parsed = false;
+        try {
+          ParsedLintReport report = get(parsing).report;
+          parsed = true;
+          return report;
+        } finally {
+          if (!parsed) {
+            reportsByCanonicalPath.remove(path, parsing);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * To be called instead of {@link #report} by a module which points at a report but does not read it through the
+   * cache, for instance because its issues are replayed, so that the report is not kept for that module.
+   */
+  void skip(File lintXml) throws IOException {
+    String path = lintXml.getCanonicalPath();
+    if (isLastRead(path)) {
+      reportsByCanonicalPath.remove(path);
+    }
+  }
+
+  private boolean isLastRead(String path) throws IOException {
+    AtomicInteger remainingReads = remainingReads().get(path);
+    return remainingReads == null || remainingReads.decrementAndGet() <= 0;
+  }
+
+  private static Entry get(FutureTask<Entry> task) throws IOException, XMLStreamException {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for a lint report to be parsed", e);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), IOException.class, XMLStreamException.class);
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  private static Entry parse(File lintXml, LintReportReader reader, ActiveRuleIndex activeRules) throws IOException, XMLStreamException {
+    File physicalFile = LintReportFiles.physicalFile(lintXml);
+    long lastModified = physicalFile.lastModified();
+    long length = physicalFile.length();
+    ParsedLintReport.Builder builder = new ParsedLintReport.Builder();
+    InputStream input = LintReportFiles.open(lintXml);
+    try {
+      reader.read(input, activeRules, builder);
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+    return new Entry(lastModified, length, activeRules.keys(), builder.build());
+  }
+
+  /**
+   * Number of modules which are still to read each report, as located with the settings of the modules.
+   */
+  private synchronized Map<String, AtomicInteger> remainingReads() throws IOException {
+    if (remainingReadsByCanonicalPath == null) {
+      Map<String, AtomicInteger> reads = Maps.newHashMap();
+      if (reactor != null) {
+        for (ProjectDefinition module : reactor.getProjects()) {
+          String value = module.getProperties().getProperty(AndroidPlugin.LINT_REPORT_PROPERTY, AndroidPlugin.LINT_REPORT_PROPERTY_DEFAULT);
+          for (File report : new LintReportLocator(module.getBaseDir()).locate(value)) {
+            String path = report.getCanonicalPath();
+            if (!reads.containsKey(path)) {
+              reads.put(path, new AtomicInteger());
+            }
+            reads.get(path).incrementAndGet();
+          }
+        }
+      }
+      remainingReadsByCanonicalPath = reads;
+    }
+    return remainingReadsByCanonicalPath;
+  }
+
+  private static class Entry {
+    final long lastModified;
+    final long length;
+    final List<String> activeRuleKeys;
+    final ParsedLintReport report;
+
+    Entry(long lastModified, long length, List<String> activeRuleKeys, ParsedLintReport report) {
+      this.lastModified = lastModified;
+      this.length = length;
+      this.activeRuleKeys = activeRuleKeys;
+      this.report = report;
+    }
+
+    /**
+     * Modules with another quality profile parse the report again.
+     */
+    boolean isValid(File lintXml, ActiveRuleIndex activeRules) {
+      File physicalFile = LintReportFiles.physicalFile(lintXml);
+      return physicalFile.lastModified() == lastModified && physicalFile.length() == length && activeRules.keys().equals(activeRuleKeys);
+    }
+  }
+
+}
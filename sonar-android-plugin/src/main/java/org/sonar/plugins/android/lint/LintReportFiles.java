@@ -0,0 +1,136 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Lint reports may be compressed: {@code lint-results.xml.gz}, or an entry of a zip archive written as
+ * {@code archive.zip!/path/lint-results.xml}. They are decompressed while being read, never to disk.
+ */
+final class LintReportFiles {
+
+  static final String ARCHIVE_SEPARATOR = "!/";
+  private static final String GZIP_EXTENSION = ".gz";
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private LintReportFiles() {
+  }
+
+  static File archiveEntry(File archive, String entry) {
+    return new File(archive.getPath() + ARCHIVE_SEPARATOR + entry);
+  }
+
+  /**
+   * The file actually on disk: the archive for an archive entry, the report itself otherwise.
+   */
+  static File physicalFile(File report) {
+    int separator = archiveSeparator(report);
+    return separator < 0 ? report : new File(report.getPath().substring(0, separator));
+  }
+
+  static boolean exists(File report) {
+    int separator = archiveSeparator(report);
+    if (separator < 0) {
+      return report.isFile();
+    }
+    File archive = physicalFile(report);
+    if (!archive.isFile()) {
+      return false;
+    }
+    try {
+      ZipFile zipFile = new ZipFile(archive);
+      try {
+        ZipEntry entry = zipFile.getEntry(entryName(report, separator));
+        return entry != null && !entry.isDirectory();
+      } finally {
+        zipFile.close();
+      }
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Whether the bytes of the report can be read at any offset: neither compressed nor in an archive.
+   */
+  static boolean isSeekable(File report) {
+    return archiveSeparator(report) < 0 && !report.getName().endsWith(GZIP_EXTENSION);
+  }
+
+  static InputStream open(File report) throws IOException {
+    int separator = archiveSeparator(report);
+    if (separator >= 0) {
+      return openArchiveEntry(physicalFile(report), entryName(report, separator));
+    }
+    InputStream input = new FileInputStream(report);
+    if (report.getName().endsWith(GZIP_EXTENSION)) {
+      try {
+        return new GZIPInputStream(input, BUFFER_SIZE);
+      } catch (IOException e) {
+        input.close();
+        throw e;
+      }
+    }
+    return input;
+  }
+
+  private static InputStream openArchiveEntry(File archive, String entryName) throws IOException {
+    final ZipFile zipFile = new ZipFile(archive);
+    try {
+      ZipEntry entry = zipFile.getEntry(entryName);
+      if (entry == null || entry.isDirectory()) {
+        throw new FileNotFoundException("No entry " + entryName + " in " + archive);
+      }
+      return new FilterInputStream(zipFile.getInputStream(entry)) {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            zipFile.close();
+          }
+        }
+      };
+    } catch (IOException e) {
+      zipFile.close();
+      throw e;
+    }
+  }
+
+  private static int archiveSeparator(File report) {
+    String path = report.getPath();
+    int separator = path.indexOf(ARCHIVE_SEPARATOR);
+    return separator < 0 ? path.indexOf("!" + File.separatorChar) : separator;
+  }
+
+  private static String entryName(File report, int separator) {
+    return report.getPath().substring(separator + ARCHIVE_SEPARATOR.length()).replace(File.separatorChar, '/');
+  }
+
+}
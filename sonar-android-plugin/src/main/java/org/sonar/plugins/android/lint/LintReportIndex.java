@@ -0,0 +1,447 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintIssue;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintLocation;
+
+import javax.annotation.CheckForNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * Byte ranges of the {@code <issue>} elements of a lint report, by path of their locations, so that a module can
+ * read the issues of its own files without scanning the whole report. The index is written in the work directory
+ * of the root module, where all the modules find it, under a name derived from the canonical path of the report, and is only valid for the size, modification time and
+ * content check the report had when it was indexed. The content check hashes the head and the tail of the report,
+ * which catches a report rewritten within the same second with the same size. Issues located by a relative path
+ * cannot be attributed to a module: they are read by all of them. Immutable once built.
+ */
+class LintReportIndex {
+
+  static final String EXTENSION = ".idx";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LintReportIndex.class);
+  private static final int MAGIC = 0x4C494458;
+  private static final int VERSION = 2;
+  private static final int BUFFER_SIZE = 64 * 1024;
+  // bytes hashed at each end of the report
+  private static final int CHECKED_BYTES = 64 * 1024;
+
+  private final long reportLength;
+  private final long reportLastModified;
+  private final long reportCheck;
+  // byte ranges of the issues, in the order of the report
+  private final long[] starts;
+  private final long[] ends;
+  private final int[] relativeIssues;
+  private final NavigableMap<String, int[]> issuesByAbsolutePath;
+
+  private LintReportIndex(long reportLength, long reportLastModified, long reportCheck, long[] starts, long[] ends,
+    int[] relativeIssues, NavigableMap<String, int[]> issuesByAbsolutePath) {
+    this.reportLength = reportLength;
+    this.reportLastModified = reportLastModified;
+    this.reportCheck = reportCheck;
+    this.starts = starts;
+    this.ends = ends;
+    this.relativeIssues = relativeIssues;
+    this.issuesByAbsolutePath = issuesByAbsolutePath;
+  }
+
+  /**
+   * The file of the index of the report in the given directory, named after the canonical path of the report.
+   */
+  static File indexFile(File indexDir, File report) throws IOException {
+    String path = report.getCanonicalPath();
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    hasher.putInt(path.length());
+    hasher.putString(path);
+    return new File(indexDir, hasher.hash().toString() + EXTENSION);
+  }
+
+  /**
+   * Hash of the first and of the last {@value #CHECKED_BYTES} bytes of the report.
+   */
+  static long contentCheck(File report) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(report, "r");
+    try {
+      long length = file.length();
+      Hasher hasher = Hashing.murmur3_128().newHasher();
+      hasher.putLong(length);
+      byte[] buffer = new byte[CHECKED_BYTES];
+      int head = (int) Math.min(length, CHECKED_BYTES);
+      file.readFully(buffer, 0, head);
+      hasher.putBytes(buffer, 0, head);
+      long tailStart = Math.max(head, length - CHECKED_BYTES);
+      int tail = (int) (length - tailStart);
+      file.seek(tailStart);
+      file.readFully(buffer, 0, tail);
+      hasher.putBytes(buffer, 0, tail);
+      return hasher.hash().asLong();
+    } finally {
+      file.close();
+    }
+  }
+
+  int size() {
+    return starts.length;
+  }
+
+  /**
+   * Byte ranges, as start and end pairs in the order of the report, of the issues with a location in the given
+   * directories or with a relative location. Adjacent ranges are merged.
+   */
+  long[] ranges(Collection<File> baseDirs) {
+    IntList issues = new IntList();
+    issues.addAll(relativeIssues);
+    for (String directory : ParsedLintReport.directories(baseDirs)) {
+      for (int[] pathIssues : ParsedLintReport.under(issuesByAbsolutePath, directory)) {
+        issues.addAll(pathIssues);
+      }
+    }
+    int[] sorted = issues.toArray();
+    Arrays.sort(sorted);
+    long[] ranges = new long[2 * sorted.length];
+    int size = 0;
+    for (int i = 0; i < sorted.length; i++) {
+      if (i > 0 && sorted[i] == sorted[i - 1]) {
+        continue;
+      }
+      long start = starts[sorted[i]];
+      if (size > 0 && ranges[size - 1] == start) {
+        ranges[size - 1] = ends[sorted[i]];
+      } else {
+        ranges[size++] = start;
+        ranges[size++] = ends[sorted[i]];
+      }
+    }
+    return Arrays.copyOf(ranges, size);
+  }
+
+  /**
+   * Removes the locations of an issue which are neither relative nor in the given normalized directories, and
+   * returns whether any location is left.
+   */
+  static boolean retainLocations(LintIssue issue, List<String> directories) {
+    Iterator<LintLocation> locations = issue.locations.iterator();
+    while (locations.hasNext()) {
+      String file = locations.next().file;
+      if (new File(file).isAbsolute() && !isUnder(ParsedLintReport.normalize(file), directories)) {
+        locations.remove();
+      }
+    }
+    return !issue.locations.isEmpty();
+  }
+
+  private static boolean isUnder(String path, List<String> directories) {
+    for (String directory : directories) {
+      if (path.startsWith(directory) && path.length() > directory.length() && path.charAt(directory.length()) == '/') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The given byte ranges of the report, put end to end.
+   */
+  static InputStream open(File report, long[] ranges) throws IOException {
+    return new RangesInputStream(new RandomAccessFile(report, "r"), ranges);
+  }
+
+  /**
+   * The index of the report in the given directory, or null if it has not been indexed, or has changed since.
+   */
+  @CheckForNull
+  static LintReportIndex load(File indexDir, File report) {
+    File indexFile;
+    try {
+      indexFile = indexFile(indexDir, report);
+    } catch (IOException e) {
+      LOGGER.debug("Unable to get canonical path of " + report, e);
+      return null;
+    }
+    if (!indexFile.isFile()) {
+      return null;
+    }
+    DataInputStream input = null;
+    try {
+      input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), BUFFER_SIZE));
+      if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+        LOGGER.debug("Ignoring index {} of an unknown format", indexFile);
+        return null;
+      }
+      long length = input.readLong();
+      long lastModified = input.readLong();
+      long check = input.readLong();
+      if (length != report.length() || lastModified != report.lastModified() || check != contentCheck(report)) {
+        LOGGER.debug("Ignoring index {}: the report has changed since it was indexed", indexFile);
+        return null;
+      }
+      int size = input.readInt();
+      long[] starts = new long[size];
+      long[] ends = new long[size];
+      for (int i = 0; i < size; i++) {
+        starts[i] = input.readLong();
+        ends[i] = starts[i] + input.readInt();
+      }
+      int[] relativeIssues = readInts(input);
+      NavigableMap<String, int[]> issuesByAbsolutePath = Maps.newTreeMap();
+      int paths = input.readInt();
+      for (int i = 0; i < paths; i++) {
+        String path = input.readUTF();
+        issuesByAbsolutePath.put(path, readInts(input));
+      }
+      return new LintReportIndex(length, lastModified, check, starts, ends, relativeIssues, issuesByAbsolutePath);
+    } catch (IOException e) {
+      LOGGER.warn("Unable to read lint report index " + indexFile, e);
+      return null;
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  /**
+   * Writes the index to the given directory, unless the report has changed since it was indexed. The index is
+   * written to a temporary file first, so that concurrent readers never see a partial index.
+   */
+  void write(File indexDir, File report) throws IOException {
+    if (reportLength != report.length() || reportLastModified != report.lastModified() || reportCheck != contentCheck(report)) {
+      LOGGER.debug("Not indexing {}: it changed while being read", report);
+      return;
+    }
+    File indexFile = indexFile(indexDir, report);
+    FileUtils.forceMkdir(indexDir);
+    File temp = File.createTempFile(indexFile.getName(), ".tmp", indexDir);
+    try {
+      DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), BUFFER_SIZE));
+      try {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeLong(reportLength);
+        output.writeLong(reportLastModified);
+        output.writeLong(reportCheck);
+        output.writeInt(starts.length);
+        for (int i = 0; i < starts.length; i++) {
+          output.writeLong(starts[i]);
+          output.writeInt((int) (ends[i] - starts[i]));
+        }
+        writeInts(output, relativeIssues);
+        output.writeInt(issuesByAbsolutePath.size());
+        for (Map.Entry<String, int[]> entry : issuesByAbsolutePath.entrySet()) {
+          output.writeUTF(entry.getKey());
+          writeInts(output, entry.getValue());
+        }
+      } finally {
+        output.close();
+      }
+      Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      FileUtils.deleteQuietly(temp);
+    }
+  }
+
+  private static int[] readInts(DataInputStream input) throws IOException {
+    int[] values = new int[input.readInt()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = input.readInt();
+    }
+    return values;
+  }
+
+  private static void writeInts(DataOutputStream output, int[] values) throws IOException {
+    output.writeInt(values.length);
+    for (int value : values) {
+      output.writeInt(value);
+    }
+  }
+
+  static class Builder implements LintReportScanner.RangeHandler {
+    private final long reportLength;
+    private final long reportLastModified;
+    private final long reportCheck;
+    private final LongList starts = new LongList();
+    private final LongList ends = new LongList();
+    private final IntList relativeIssues = new IntList();
+    private final NavigableMap<String, IntList> issuesByAbsolutePath = Maps.newTreeMap();
+
+    /**
+     * To be created before the report is read, so that changes made to the report while it is read are noticed.
+     */
+    Builder(File report) throws IOException {
+      this.reportLength = report.length();
+      this.reportLastModified = report.lastModified();
+      this.reportCheck = contentCheck(report);
+    }
+
+    @Override
+    public void handle(LintIssue lintIssue, long start, long end) {
+      if (end - start > Integer.MAX_VALUE) {
+        throw new IllegalStateException("Lint issue larger than 2 GB at byte offset " + start);
+      }
+      int issue = starts.size();
+      starts.add(start);
+      ends.add(end);
+      for (LintLocation location : lintIssue.locations) {
+        if (new File(location.file).isAbsolute()) {
+          String path = ParsedLintReport.normalize(location.file);
+          IntList issues = issuesByAbsolutePath.get(path);
+          if (issues == null) {
+            issues = new IntList();
+            issuesByAbsolutePath.put(path, issues);
+          }
+          issues.addOnce(issue);
+        } else {
+          relativeIssues.addOnce(issue);
+        }
+      }
+    }
+
+    LintReportIndex build() {
+      NavigableMap<String, int[]> issues = Maps.newTreeMap();
+      for (Map.Entry<String, IntList> entry : issuesByAbsolutePath.entrySet()) {
+        issues.put(entry.getKey(), entry.getValue().toArray());
+      }
+      return new LintReportIndex(reportLength, reportLastModified, reportCheck, starts.toArray(), ends.toArray(), relativeIssues.toArray(), issues);
+    }
+  }
+
+  private static class IntList {
+    private int[] values = new int[4];
+    private int size;
+
+    void add(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    /**
+     * Adds a value unless it was the last one added: the locations of an issue are added one after the other.
+     */
+    void addOnce(int value) {
+      if (size == 0 || values[size - 1] != value) {
+        add(value);
+      }
+    }
+
+    void addAll(int[] added) {
+      if (size + added.length > values.length) {
+        values = Arrays.copyOf(values, Math.max(size + added.length, size * 2));
+      }
+      System.arraycopy(added, 0, values, size, added.length);
+      size += added.length;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+
+  private static class LongList {
+    private long[] values = new long[16];
+    private int size;
+
+    void add(long value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    int size() {
+      return size;
+    }
+
+    long[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+
+  /**
+   * Reads byte ranges of a file one after the other, seeking from one to the next.
+   */
+  private static class RangesInputStream extends InputStream {
+    private final RandomAccessFile file;
+    private final long[] ranges;
+    private int range = -2;
+    private long remaining;
+
+    RangesInputStream(RandomAccessFile file, long[] ranges) {
+      this.file = file;
+      this.ranges = ranges;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      return read(single, 0, 1) < 0 ? -1 : (single[0] & 0xFF);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      while (remaining == 0) {
+        range += 2;
+        if (range >= ranges.length) {
+          return -1;
+        }
+        file.seek(ranges[range]);
+        remaining = ranges[range + 1] - ranges[range];
+      }
+      int read = file.read(buffer, offset, (int) Math.min(length, remaining));
+      if (read < 0) {
+        throw new IOException("Lint report shorter than its index");
+      }
+      remaining -= read;
+      return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+      file.close();
+    }
+  }
+
+}
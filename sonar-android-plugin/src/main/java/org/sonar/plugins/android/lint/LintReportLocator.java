@@ -0,0 +1,186 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Resolves the value of {@link org.sonar.plugins.android.AndroidPlugin#LINT_REPORT_PROPERTY}: a comma-separated list
+ * of report paths or glob patterns, such as {@code build/outputs/lint-results-*.xml} or
+ * {@code **}{@code /build/outputs/lint-results*.xml}, absolute or relative to the base directory. Reports may be
+ * gzipped, or entries of zip archives such as {@code reports.zip!/app/lint-results.xml}.
+ */
+class LintReportLocator {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LintReportLocator.class);
+  private static final String GLOB_CHARACTERS = "*?[{";
+
+  private final File baseDir;
+
+  LintReportLocator(File baseDir) {
+    this.baseDir = baseDir;
+  }
+
+  /**
+   * Existing reports matching the given value, without duplicates, in the order of the entries.
+   */
+  List<File> locate(@Nullable String value) {
+    Set<File> reports = Sets.newLinkedHashSet();
+    if (value != null) {
+      for (String entry : entries(value)) {
+        List<File> files;
+        if (isGlob(entry)) {
+          files = expand(entry);
+        } else {
+          files = existing(resolveReport(entry));
+        }
+        if (files.isEmpty()) {
+          LOGGER.debug("No lint report found for {}", entry);
+        }
+        reports.addAll(files);
+      }
+    }
+    return Lists.newArrayList(reports);
+  }
+
+  /**
+   * Splits on commas, except those of a {@code {a,b}} glob group.
+   */
+  private static List<String> entries(String value) {
+    List<String> entries = Lists.newArrayList();
+    int groupDepth = 0;
+    int start = 0;
+    for (int i = 0; i <= value.length(); i++) {
+      char c = i < value.length() ? value.charAt(i) : ',';
+      if (c == '{') {
+        groupDepth++;
+      } else if (c == '}' && groupDepth > 0) {
+        groupDepth--;
+      } else if (c == ',' && (groupDepth == 0 || i == value.length())) {
+        String entry = value.substring(start, i).trim();
+        if (!entry.isEmpty()) {
+          entries.add(entry);
+        }
+        start = i + 1;
+      }
+    }
+    return entries;
+  }
+
+  private static boolean isGlob(String entry) {
+    for (int i = 0; i < entry.length(); i++) {
+      if (GLOB_CHARACTERS.indexOf(entry.charAt(i)) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private File resolve(String path) {
+    File file = new File(path);
+    if (!file.isAbsolute()) {
+      file = new File(baseDir, path);
+    }
+    try {
+      return file.getCanonicalFile();
+    } catch (IOException e) {
+      LOGGER.warn("Unable to resolve path : " + path, e);
+      return file.getAbsoluteFile();
+    }
+  }
+
+  /**
+   * {@code archive.zip!/entry} designates an entry of an archive: only the archive is relative to the base directory.
+   */
+  private File resolveReport(String entry) {
+    int archiveSeparator = entry.indexOf(LintReportFiles.ARCHIVE_SEPARATOR);
+    if (archiveSeparator < 0) {
+      return resolve(entry);
+    }
+    File archive = resolve(entry.substring(0, archiveSeparator));
+    return LintReportFiles.archiveEntry(archive, entry.substring(archiveSeparator + LintReportFiles.ARCHIVE_SEPARATOR.length()));
+  }
+
+  private static List<File> existing(File file) {
+    return LintReportFiles.exists(file) ? Collections.singletonList(file) : Collections.<File>emptyList();
+  }
+
+  /**
+   * Walks the directory before the first glob character, no deeper than the pattern can match.
+   */
+  private List<File> expand(String entry) {
+    String pattern = entry.replace('\\', '/');
+    int firstGlob = 0;
+    while (GLOB_CHARACTERS.indexOf(pattern.charAt(firstGlob)) < 0) {
+      firstGlob++;
+    }
+    int separator = pattern.lastIndexOf('/', firstGlob);
+    File root = separator < 0 ? resolve(".") : resolve(separator == 0 ? "/" : pattern.substring(0, separator));
+    String relativePattern = pattern.substring(separator + 1);
+    if (!root.isDirectory()) {
+      return Collections.emptyList();
+    }
+    int maxDepth = relativePattern.contains("**") ? Integer.MAX_VALUE : (relativePattern.split("/").length);
+    final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + relativePattern);
+    final Path rootPath = root.toPath();
+    final List<File> files = Lists.newArrayList();
+    try {
+      Files.walkFileTree(rootPath, EnumSet.noneOf(FileVisitOption.class), maxDepth, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+          if (attributes.isRegularFile() && matcher.matches(rootPath.relativize(file))) {
+            files.add(file.toFile());
+          }
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException e) {
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    } catch (IOException e) {
+      LOGGER.warn("Unable to look for lint reports matching " + entry, e);
+    }
+    Collections.sort(files);
+    return files;
+  }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintIssue;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintLocation;
+
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Streaming reader of lint-results.xml: issues are handed over one at a time as soon as their
+ * element is closed, so that the whole report is never held in memory.
+ */
+class LintReportParser implements LintReportReader {
+
+  private static final String ISSUES_ELEMENT = "issues";
+  private static final String ISSUE_ELEMENT = "issue";
+  private static final String LOCATION_ELEMENT = "location";
+
+  private final XMLInputFactory xmlFactory;
+
+  LintReportParser() {
+    xmlFactory = XMLInputFactory.newInstance();
+    xmlFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+    xmlFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+    // just so it won't try to load DTD in if there's DOCTYPE
+    xmlFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    xmlFactory.setProperty(XMLInputFactory.IS_VALIDATING, Boolean.FALSE);
+  }
+
+  @Override
+  public void read(InputStream input, Predicate<String> ruleFilter, IssueHandler handler) throws XMLStreamException {
+    XMLStreamReader reader = xmlFactory.createXMLStreamReader(input);
+    try {
+      if (nextElement(reader) != XMLStreamConstants.START_ELEMENT || !ISSUES_ELEMENT.equals(reader.getLocalName())) {
+        throw new XMLStreamException("Root element should be <" + ISSUES_ELEMENT + ">", reader.getLocation());
+      }
+      while (nextElement(reader) == XMLStreamConstants.START_ELEMENT) {
+        if (ISSUE_ELEMENT.equals(reader.getLocalName()) && ruleFilter.apply(requiredAttribute(reader, "id"))) {
+          handler.handle(readIssue(reader));
+        } else {
+          skipElement(reader);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static LintIssue readIssue(XMLStreamReader reader) throws XMLStreamException {
+    String id = requiredAttribute(reader, "id");
+    String message = requiredAttribute(reader, "message");
+    List<LintLocation> locations = Lists.newArrayList();
+    while (nextElement(reader) == XMLStreamConstants.START_ELEMENT) {
+      if (LOCATION_ELEMENT.equals(reader.getLocalName())) {
+        locations.add(new LintLocation(requiredAttribute(reader, "file"), toInteger(reader.getAttributeValue(null, "line"))));
+      }
+      skipElement(reader);
+    }
+    if (locations.isEmpty()) {
+      throw new XMLStreamException("Issue " + id + " has no location", reader.getLocation());
+    }
+    return new LintIssue(id, message, locations);
+  }
+
+  private static String requiredAttribute(XMLStreamReader reader, String name) throws XMLStreamException {
+    String value = reader.getAttributeValue(null, name);
+    if (value == null) {
+      throw new XMLStreamException("Missing attribute '" + name + "' on <" + reader.getLocalName() + ">", reader.getLocation());
+    }
+    return value;
+  }
+
+  @Nullable
+  private static Integer toInteger(@Nullable String value) {
+    return value == null ? null : Integer.valueOf(value);
+  }
+
+  /**
+   * Moves to the next start or end tag, ignoring text, comments and processing instructions.
+   */
+  private static int nextElement(XMLStreamReader reader) throws XMLStreamException {
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT || event == XMLStreamConstants.END_ELEMENT) {
+        return event;
+      }
+    }
+    return XMLStreamConstants.END_DOCUMENT;
+  }
+
+  /**
+   * Skips the element the reader is positioned on, leaving it on its end tag.
+   */
+  private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      int event = nextElement(reader);
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      } else {
+        throw new XMLStreamException("Unexpected end of document", reader.getLocation());
+      }
+    }
+  }
+
+}
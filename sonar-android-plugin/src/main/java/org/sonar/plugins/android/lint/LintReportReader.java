@@ -0,0 +1,48 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.base.Predicate;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintIssue;
+
+import javax.xml.stream.XMLStreamException;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a lint-results.xml report and hands its issues over one at a time.
+ */
+interface LintReportReader {
+
+  /**
+   * @param ruleFilter applied to the id of each issue before anything else is decoded: rejected issues
+   *                   are skipped without reading their message nor their locations.
+   */
+  void read(InputStream input, Predicate<String> ruleFilter, IssueHandler handler) throws IOException, XMLStreamException;
+
+  interface IssueHandler {
+    /**
+     * @param lintIssue may be reused by the reader for the next issues once this method returns
+     */
+    void handle(LintIssue lintIssue);
+  }
+
+}
@@ -0,0 +1,738 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.Lists;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintIssue;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintLocation;
+
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLStreamException;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Byte level reader of lint-results.xml reports written in UTF-8.
+ * Only the attributes the processor uses (id, message, file and line) are decoded: all the other ones,
+ * among which the large explanation, summary and errorLine attributes, are skipped over without being
+ * decoded nor turned into Strings. Values repeated throughout the report, such as rule ids, file paths and
+ * messages, are decoded once and shared. The issue and locations handed over are reused from one issue to the
+ * next, so that reading a report allocates next to nothing per issue. Report files may be memory-mapped instead
+ * of being copied into a buffer. The scanner also tells where each issue lies in the report, and reads issues
+ * from byte ranges of a report put end to end: see {@link LintReportIndex}.
+ */
+class LintReportScanner implements LintReportReader {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int MAPPED_CHUNK_SIZE = 256 * 1024 * 1024;
+  private static final int LINE_CACHE_SIZE = 8192;
+
+  private static final byte[] ISSUES = ascii("issues");
+  private static final byte[] ISSUE = ascii("issue");
+  private static final byte[] LOCATION = ascii("location");
+  private static final byte[][] ISSUE_ATTRIBUTES = {ascii("id"), ascii("message")};
+  private static final byte[][] LOCATION_ATTRIBUTES = {ascii("file"), ascii("line")};
+  private static final byte[][] NO_ATTRIBUTES = {};
+
+  private static final int OTHER_TAG = 0;
+  private static final int ISSUES_TAG = 1;
+  private static final int ISSUE_TAG = 2;
+  private static final int LOCATION_TAG = 3;
+
+  private final int bufferSize;
+  private final boolean mapped;
+  private final boolean interning;
+
+  LintReportScanner() {
+    this(BUFFER_SIZE);
+  }
+
+  LintReportScanner(int bufferSize) {
+    this(bufferSize, false);
+  }
+
+  /**
+   * @param mapped whether reports read from a {@link FileInputStream} are memory-mapped, by chunks of
+   *               {@code bufferSize} bytes, instead of being copied into a buffer. Other streams are buffered.
+   */
+  LintReportScanner(int bufferSize, boolean mapped) {
+    this(bufferSize, mapped, true);
+  }
+
+  /**
+   * @param interning whether equal attribute values of a report share one String, found by their bytes
+   */
+  LintReportScanner(int bufferSize, boolean mapped, boolean interning) {
+    this.bufferSize = bufferSize;
+    this.mapped = mapped;
+    this.interning = interning;
+  }
+
+  static LintReportScanner mapped() {
+    return new LintReportScanner(MAPPED_CHUNK_SIZE, true);
+  }
+
+  /**
+   * Receives the issues of a report along with the byte offsets of their elements.
+   */
+  interface RangeHandler {
+    /**
+     * @param start offset of the {@code <issue} start tag
+     * @param end offset right after the end of the element
+     */
+    void handle(LintIssue lintIssue, long start, long end);
+  }
+
+  @Override
+  public void read(InputStream input, Predicate<String> ruleFilter, IssueHandler handler) throws IOException, XMLStreamException {
+    new Scan(input(input), ruleFilter, handler, null, interning).run();
+  }
+
+  /**
+   * Reads all the issues of a report, handing over where each one lies in the report.
+   */
+  void index(InputStream input, RangeHandler handler) throws IOException, XMLStreamException {
+    new Scan(input(input), Predicates.<String>alwaysTrue(), null, handler, interning).run();
+  }
+
+  /**
+   * Reads a sequence of {@code <issue>} elements without root element, such as byte ranges of a report put end
+   * to end.
+   */
+  void readIssues(InputStream input, Predicate<String> ruleFilter, IssueHandler handler) throws IOException, XMLStreamException {
+    new Scan(input(input), ruleFilter, handler, null, interning).runIssues();
+  }
+
+  private Input input(InputStream input) throws IOException {
+    if (mapped && input instanceof FileInputStream) {
+      return new MappedInput(((FileInputStream) input).getChannel(), bufferSize);
+    }
+    return new StreamInput(input, bufferSize);
+  }
+
+  private static byte[] ascii(String value) {
+    return value.getBytes(Charsets.US_ASCII);
+  }
+
+  /**
+   * Source of the bytes being scanned.
+   */
+  abstract static class Input {
+    /**
+     * Returns a buffer whose index 0 is the absolute offset {@code keepFrom} and which contains the byte at
+     * absolute offset {@code required} unless the end of the report has been reached.
+     */
+    abstract ByteBuffer window(long keepFrom, long required) throws IOException;
+  }
+
+  static class StreamInput extends Input {
+    private final InputStream stream;
+    private byte[] array;
+    private long base;
+    private int limit;
+    private boolean eof;
+
+    StreamInput(InputStream stream, int bufferSize) {
+      this.stream = stream;
+      this.array = new byte[bufferSize];
+    }
+
+    @Override
+    ByteBuffer window(long keepFrom, long required) throws IOException {
+      int keep = (int) (keepFrom - base);
+      if (keep > 0) {
+        System.arraycopy(array, keep, array, 0, limit - keep);
+        limit -= keep;
+        base = keepFrom;
+      }
+      int needed = (int) (required - base) + 1;
+      if (needed > array.length) {
+        array = Arrays.copyOf(array, Math.max(needed, array.length * 2));
+      }
+      while (limit < needed && !eof) {
+        int read = stream.read(array, limit, array.length - limit);
+        if (read < 0) {
+          eof = true;
+        } else {
+          limit += read;
+        }
+      }
+      return ByteBuffer.wrap(array, 0, limit);
+    }
+  }
+
+  /**
+   * Maps the report in read-only chunks starting where the scan needs to keep bytes from: the bytes are read by
+   * the scan straight from the page cache. A chunk is remapped only once the scan goes past its end.
+   */
+  static class MappedInput extends Input {
+    private final FileChannel channel;
+    private final long start;
+    private final long size;
+    private final int chunkSize;
+    private MappedByteBuffer chunk;
+    private long chunkStart;
+
+    MappedInput(FileChannel channel, int chunkSize) throws IOException {
+      this.channel = channel;
+      this.start = channel.position();
+      this.size = channel.size() - start;
+      this.chunkSize = chunkSize;
+    }
+
+    @Override
+    ByteBuffer window(long keepFrom, long required) throws IOException {
+      long chunkEnd = chunk == null ? -1 : (chunkStart + chunk.limit());
+      if (chunk == null || keepFrom < chunkStart || (required >= chunkEnd && chunkEnd < size)) {
+        long length = Math.min(size - keepFrom, Math.max(chunkSize, required - keepFrom + 1));
+        if (length > Integer.MAX_VALUE) {
+          throw new IOException("Lint report value larger than 2 GB at byte offset " + keepFrom);
+        }
+        chunk = channel.map(FileChannel.MapMode.READ_ONLY, start + keepFrom, length);
+        chunkStart = keepFrom;
+      }
+      ByteBuffer window = chunk.duplicate();
+      window.position((int) (keepFrom - chunkStart));
+      return window.slice();
+    }
+  }
+
+  private static class Scan {
+    private final Input input;
+    private final Predicate<String> ruleFilter;
+    private final IssueHandler handler;
+    private final RangeHandler rangeHandler;
+    private final ByteStringTable strings;
+
+    // handed over for every issue, refilled in place
+    private final LintIssue issue = new LintIssue(null, null, new ArrayList<LintLocation>());
+    private final List<LintLocation> locationPool = Lists.newArrayList();
+    private final Integer[] lines = new Integer[LINE_CACHE_SIZE];
+
+    private ByteBuffer buffer = ByteBuffer.allocate(0);
+    private long base;
+    private long mark;
+    private byte[] scratch = new byte[256];
+
+    // state of the last start tag read
+    private int tagKind;
+    private boolean selfClosing;
+    private final long[] valueStart = new long[2];
+    private final long[] valueEnd = new long[2];
+
+    Scan(Input input, Predicate<String> ruleFilter, @Nullable IssueHandler handler, @Nullable RangeHandler rangeHandler, boolean interning) {
+      this.input = input;
+      this.ruleFilter = ruleFilter;
+      this.handler = handler;
+      this.rangeHandler = rangeHandler;
+      this.strings = interning ? new ByteStringTable() : null;
+    }
+
+    void run() throws IOException, XMLStreamException {
+      long pos = nextTag(0);
+      if (pos >= 0 && !isEndTag(pos)) {
+        pos = readStartTag(pos);
+      }
+      if (pos < 0 || tagKind != ISSUES_TAG) {
+        throw new XMLStreamException("Root element should be <issues>");
+      }
+      if (!selfClosing) {
+        readElements(pos, true);
+      }
+    }
+
+    void runIssues() throws IOException, XMLStreamException {
+      readElements(0, false);
+    }
+
+    /**
+     * Reads elements up to the end tag of the enclosing element, or up to the end of the input when not enclosed.
+     */
+    private void readElements(long from, boolean enclosed) throws IOException, XMLStreamException {
+      long pos = from;
+      while (true) {
+        pos = nextTag(pos);
+        if (pos < 0) {
+          if (enclosed) {
+            throw error("Unexpected end of report", mark);
+          }
+          return;
+        }
+        if (isEndTag(pos)) {
+          if (enclosed) {
+            return;
+          }
+          throw error("Unexpected end tag", pos);
+        }
+        long tagStart = pos;
+        pos = readStartTag(pos);
+        if (tagKind == ISSUE_TAG) {
+          pos = readIssue(tagStart, pos);
+        } else if (!selfClosing) {
+          pos = skipContent(pos);
+        }
+      }
+    }
+
+    private long readIssue(long tagStart, long pos) throws IOException, XMLStreamException {
+      String id = requiredValue(0, "id", "issue");
+      if (!ruleFilter.apply(id)) {
+        return selfClosing ? pos : skipContent(pos);
+      }
+      String message = requiredValue(1, "message", "issue");
+      List<LintLocation> locations = issue.locations;
+      locations.clear();
+      long current = pos;
+      if (!selfClosing) {
+        while (true) {
+          current = nextTag(current);
+          if (current < 0) {
+            throw error("Unexpected end of report", mark);
+          }
+          if (isEndTag(current)) {
+            current = tagEnd(current);
+            break;
+          }
+          current = readStartTag(current);
+          if (tagKind == LOCATION_TAG) {
+            LintLocation location = location(locations.size());
+            location.file = requiredValue(0, "file", "location");
+            location.line = lineValue();
+            locations.add(location);
+          }
+          if (!selfClosing) {
+            current = skipContent(current);
+          }
+        }
+      }
+      if (locations.isEmpty()) {
+        throw error("Issue " + id + " has no location", current);
+      }
+      issue.id = id;
+      issue.message = message;
+      if (rangeHandler != null) {
+        rangeHandler.handle(issue, tagStart, current);
+      } else {
+        handler.handle(issue);
+      }
+      return current;
+    }
+
+    private LintLocation location(int index) {
+      while (locationPool.size() <= index) {
+        locationPool.add(new LintLocation(null, null));
+      }
+      return locationPool.get(index);
+    }
+
+    private Integer line(int value) {
+      if (value >= lines.length) {
+        return value;
+      }
+      Integer line = lines[value];
+      if (line == null) {
+        line = value;
+        lines[value] = line;
+      }
+      return line;
+    }
+
+    private String requiredValue(int slot, String attribute, String element) throws XMLStreamException {
+      if (valueStart[slot] < 0) {
+        throw error("Missing attribute '" + attribute + "' on <" + element + ">", mark);
+      }
+      return decode(valueStart[slot], valueEnd[slot]);
+    }
+
+    @Nullable
+    private Integer lineValue() throws XMLStreamException {
+      long start = valueStart[1];
+      if (start < 0) {
+        return null;
+      }
+      long end = valueEnd[1];
+      if (end > start && end - start < 10) {
+        int value = 0;
+        long offset = start;
+        for (; offset < end; offset++) {
+          int digit = buffer.get((int) (offset - base)) - '0';
+          if (digit < 0 || digit > 9) {
+            break;
+          }
+          value = value * 10 + digit;
+        }
+        if (offset == end) {
+          return line(value);
+        }
+      }
+      // let Integer report the same error as any other XML binding would
+      return Integer.valueOf(decode(start, end));
+    }
+
+    /**
+     * Returns the offset of the next start or end tag, skipping over text, comments, processing instructions,
+     * CDATA sections and DOCTYPE declarations, or -1 at the end of the report.
+     */
+    private long nextTag(long from) throws IOException, XMLStreamException {
+      long pos = from;
+      while (true) {
+        mark = pos;
+        pos = indexOf('<', pos);
+        if (pos < 0) {
+          return -1;
+        }
+        mark = pos;
+        int next = require(pos + 1);
+        if (next == '?') {
+          pos = skipPast(pos + 2, '?', '>');
+        } else if (next == '!') {
+          if (require(pos + 2) == '-' && require(pos + 3) == '-') {
+            pos = skipPast(pos + 4, '-', '-');
+            pos = expect(pos, '>');
+          } else if (require(pos + 2) == '[') {
+            pos = skipPast(pos + 3, ']', ']');
+            pos = expect(pos, '>');
+          } else {
+            pos = skipDeclaration(pos + 2);
+          }
+        } else {
+          return pos;
+        }
+      }
+    }
+
+    private boolean isEndTag(long tagStart) throws IOException, XMLStreamException {
+      return require(tagStart + 1) == '/';
+    }
+
+    private long tagEnd(long tagStart) throws IOException, XMLStreamException {
+      long end = indexOf('>', tagStart);
+      if (end < 0) {
+        throw error("Unexpected end of report", tagStart);
+      }
+      return end + 1;
+    }
+
+    /**
+     * Reads the start tag at the given offset and returns the offset right after it.
+     * Values of the attributes needed for the tag are located, all other attributes are skipped.
+     */
+    private long readStartTag(long tagStart) throws IOException, XMLStreamException {
+      mark = tagStart;
+      long pos = tagStart + 1;
+      int b = require(pos);
+      while (!isWhitespace(b) && b != '/' && b != '>') {
+        pos++;
+        b = require(pos);
+      }
+      tagKind = tagKind(tagStart + 1, pos);
+      byte[][] attributes = tagKind == ISSUE_TAG ? ISSUE_ATTRIBUTES : (tagKind == LOCATION_TAG ? LOCATION_ATTRIBUTES : NO_ATTRIBUTES);
+      Arrays.fill(valueStart, -1);
+      while (true) {
+        pos = skipWhitespace(pos);
+        b = require(pos);
+        if (b == '>') {
+          selfClosing = false;
+          return pos + 1;
+        }
+        if (b == '/') {
+          selfClosing = true;
+          return expect(pos + 1, '>');
+        }
+        long nameStart = pos;
+        while (b != '=' && !isWhitespace(b)) {
+          pos++;
+          b = require(pos);
+        }
+        long nameEnd = pos;
+        pos = expect(skipWhitespace(pos), '=');
+        pos = skipWhitespace(pos);
+        int quote = require(pos);
+        if (quote != '"' && quote != '\'') {
+          throw error("Attribute value should be quoted", pos);
+        }
+        long start = pos + 1;
+        pos = indexOf(quote, start);
+        if (pos < 0) {
+          throw error("Unexpected end of report", start);
+        }
+        for (int slot = 0; slot < attributes.length; slot++) {
+          if (matches(nameStart, nameEnd, attributes[slot])) {
+            valueStart[slot] = start;
+            valueEnd[slot] = pos;
+          }
+        }
+        pos++;
+      }
+    }
+
+    private int tagKind(long nameStart, long nameEnd) throws IOException {
+      if (matches(nameStart, nameEnd, ISSUE)) {
+        return ISSUE_TAG;
+      } else if (matches(nameStart, nameEnd, LOCATION)) {
+        return LOCATION_TAG;
+      } else if (matches(nameStart, nameEnd, ISSUES)) {
+        return ISSUES_TAG;
+      }
+      return OTHER_TAG;
+    }
+
+    /**
+     * Skips the content of the element whose start tag ends right before the given offset, up to and
+     * including its end tag.
+     */
+    private long skipContent(long from) throws IOException, XMLStreamException {
+      int depth = 1;
+      long pos = from;
+      while (depth > 0) {
+        pos = nextTag(pos);
+        if (pos < 0) {
+          throw error("Unexpected end of report", mark);
+        }
+        if (isEndTag(pos)) {
+          depth--;
+          pos = tagEnd(pos);
+        } else {
+          pos = readStartTag(pos);
+          if (!selfClosing) {
+            depth++;
+          }
+        }
+      }
+      return pos;
+    }
+
+    private long skipPast(long from, int first, int second) throws IOException, XMLStreamException {
+      long pos = from;
+      while (true) {
+        mark = pos;
+        pos = indexOf(first, pos);
+        if (pos < 0) {
+          throw error("Unexpected end of report", from);
+        }
+        if (require(pos + 1) == second) {
+          return pos + 2;
+        }
+        pos++;
+      }
+    }
+
+    private long skipDeclaration(long from) throws IOException, XMLStreamException {
+      long pos = from;
+      int b = require(pos);
+      while (b != '>') {
+        if (b == '[') {
+          pos = indexOf(']', pos);
+          if (pos < 0) {
+            throw error("Unexpected end of report", from);
+          }
+        }
+        pos++;
+        b = require(pos);
+      }
+      return pos + 1;
+    }
+
+    private long expect(long pos, int expected) throws IOException, XMLStreamException {
+      if (require(pos) != expected) {
+        throw error("Expected '" + (char) expected + "'", pos);
+      }
+      return pos + 1;
+    }
+
+    private long skipWhitespace(long from) throws IOException, XMLStreamException {
+      long pos = from;
+      while (isWhitespace(require(pos))) {
+        pos++;
+      }
+      return pos;
+    }
+
+    private static boolean isWhitespace(int b) {
+      return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private boolean matches(long start, long end, byte[] name) throws IOException {
+      if (end - start != name.length) {
+        return false;
+      }
+      for (int i = 0; i < name.length; i++) {
+        if (byteAt(start + i) != name[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Returns the value of an attribute, looked up by its bytes among the values already decoded when interning.
+     */
+    private String decode(long start, long end) throws XMLStreamException {
+      int from = (int) (start - base);
+      int to = (int) (end - base);
+      if (strings == null) {
+        return decodeBytes(from, to);
+      }
+      int hash = ByteStringTable.hash(buffer, from, to);
+      String value = strings.get(buffer, from, to, hash);
+      if (value == null) {
+        value = decodeBytes(from, to);
+        strings.put(buffer, from, to, hash, value);
+      }
+      return value;
+    }
+
+    /**
+     * Decodes an attribute value: UTF-8 bytes, predefined and character entities, and attribute value
+     * normalization of line breaks and tabs.
+     */
+    private String decodeBytes(int from, int to) throws XMLStreamException {
+      int length = 0;
+      for (int i = from; i < to; i++) {
+        byte b = buffer.get(i);
+        ensureScratch(length + 4);
+        if (b == '&') {
+          int semicolon = i + 1;
+          while (semicolon < to && buffer.get(semicolon) != ';') {
+            semicolon++;
+          }
+          if (semicolon == to) {
+            throw error("Unterminated entity reference", base + i);
+          }
+          length = appendEntity(i + 1, semicolon, length);
+          i = semicolon;
+        } else if (b == '\r') {
+          scratch[length++] = ' ';
+          if (i + 1 < to && buffer.get(i + 1) == '\n') {
+            i++;
+          }
+        } else if (b == '\n' || b == '\t') {
+          scratch[length++] = ' ';
+        } else {
+          scratch[length++] = b;
+        }
+      }
+      return new String(scratch, 0, length, Charsets.UTF_8);
+    }
+
+    private int appendEntity(int from, int to, int length) throws XMLStreamException {
+      StringBuilder name = new StringBuilder(to - from);
+      for (int i = from; i < to; i++) {
+        name.append((char) buffer.get(i));
+      }
+      String entity = name.toString();
+      int codePoint;
+      if ("lt".equals(entity)) {
+        codePoint = '<';
+      } else if ("gt".equals(entity)) {
+        codePoint = '>';
+      } else if ("amp".equals(entity)) {
+        codePoint = '&';
+      } else if ("quot".equals(entity)) {
+        codePoint = '"';
+      } else if ("apos".equals(entity)) {
+        codePoint = '\'';
+      } else if (entity.startsWith("#x")) {
+        codePoint = parseCodePoint(entity.substring(2), 16, from);
+      } else if (entity.startsWith("#")) {
+        codePoint = parseCodePoint(entity.substring(1), 10, from);
+      } else {
+        throw error("Undeclared entity &" + entity + ";", base + from);
+      }
+      byte[] utf8 = new String(Character.toChars(codePoint)).getBytes(Charsets.UTF_8);
+      System.arraycopy(utf8, 0, scratch, length, utf8.length);
+      return length + utf8.length;
+    }
+
+    private int parseCodePoint(String value, int radix, int from) throws XMLStreamException {
+      try {
+        int codePoint = Integer.parseInt(value, radix);
+        if (Character.isValidCodePoint(codePoint)) {
+          return codePoint;
+        }
+      } catch (NumberFormatException e) {
+        // reported below
+      }
+      throw error("Invalid character reference &#" + value + ";", base + from);
+    }
+
+    private void ensureScratch(int capacity) {
+      if (capacity > scratch.length) {
+        scratch = Arrays.copyOf(scratch, Math.max(capacity, scratch.length * 2));
+      }
+    }
+
+    private long indexOf(int value, long from) throws IOException {
+      byte expected = (byte) value;
+      long offset = from;
+      while (true) {
+        int limit = buffer.limit();
+        for (int index = (int) (offset - base); index < limit; index++) {
+          if (buffer.get(index) == expected) {
+            return base + index;
+          }
+        }
+        offset = base + limit;
+        if (fill(offset) < 0) {
+          return -1;
+        }
+      }
+    }
+
+    private int require(long offset) throws IOException, XMLStreamException {
+      int b = byteAt(offset);
+      if (b < 0) {
+        throw error("Unexpected end of report", offset);
+      }
+      return b;
+    }
+
+    private int byteAt(long offset) throws IOException {
+      long index = offset - base;
+      if (index < buffer.limit()) {
+        return buffer.get((int) index) & 0xFF;
+      }
+      return fill(offset);
+    }
+
+    private int fill(long offset) throws IOException {
+      buffer = input.window(mark, offset);
+      base = mark;
+      long index = offset - base;
+      return index < buffer.limit() ? (buffer.get((int) index) & 0xFF) : -1;
+    }
+
+    private static XMLStreamException error(String message, long offset) {
+      return new XMLStreamException(message + " (at byte offset " + offset + ")");
+    }
+  }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+/**
+ * Set of primitive longs, with open addressing and linear probing, so that adding a value allocates nothing
+ * until the table has to grow. Not thread-safe.
+ */
+class LongHashSet {
+
+  private static final float LOAD_FACTOR = 0.5f;
+
+  private long[] table;
+  private boolean containsZero;
+  private int size;
+  private int resizeThreshold;
+
+  LongHashSet(int expectedSize) {
+    int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+    allocate(capacity);
+  }
+
+  /**
+   * @return true if the value was not already in the set
+   */
+  boolean add(long value) {
+    if (value == 0) {
+      if (containsZero) {
+        return false;
+      }
+      containsZero = true;
+      size++;
+      return true;
+    }
+    int mask = table.length - 1;
+    int slot = mix(value) & mask;
+    while (table[slot] != 0) {
+      if (table[slot] == value) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = value;
+    size++;
+    if (size > resizeThreshold) {
+      rehash(table.length << 1);
+    }
+    return true;
+  }
+
+  boolean contains(long value) {
+    if (value == 0) {
+      return containsZero;
+    }
+    int mask = table.length - 1;
+    int slot = mix(value) & mask;
+    while (table[slot] != 0) {
+      if (table[slot] == value) {
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  int size() {
+    return size;
+  }
+
+  private void allocate(int capacity) {
+    table = new long[capacity];
+    resizeThreshold = (int) (capacity * LOAD_FACTOR);
+  }
+
+  private void rehash(int capacity) {
+    long[] previous = table;
+    allocate(capacity);
+    int mask = capacity - 1;
+    for (long value : previous) {
+      if (value != 0) {
+        int slot = mix(value) & mask;
+        while (table[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        table[slot] = value;
+      }
+    }
+  }
+
+  private static int mix(long value) {
+    long h = value * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.commons.io.FilenameUtils;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintIssue;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintLocation;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+
+/**
+ * Issues of a lint report, indexed by the absolute path of their location so that each module of an analysis
+ * only goes through the issues of its own files. Issues with several locations are split into one issue per
+ * location. Issues located by a relative path cannot be attributed to a module: they are handed to all of them.
+ * Immutable once built.
+ */
+class ParsedLintReport {
+
+  // '0' follows '/': paths under a directory are those in [directory + '/', directory + '0')
+  private static final char SEPARATOR = '/';
+  private static final char AFTER_SEPARATOR = SEPARATOR + 1;
+
+  private final List<LintIssue> relativeIssues;
+  private final NavigableMap<String, List<LintIssue>> issuesByAbsolutePath;
+  private final int size;
+
+  private ParsedLintReport(List<LintIssue> relativeIssues, NavigableMap<String, List<LintIssue>> issuesByAbsolutePath, int size) {
+    this.relativeIssues = relativeIssues;
+    this.issuesByAbsolutePath = issuesByAbsolutePath;
+    this.size = size;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Hands over the issues located in the given directories, or by a relative path, which pass the rule filter.
+   */
+  void replay(Collection<File> baseDirs, Predicate<String> ruleFilter, LintReportReader.IssueHandler handler) {
+    for (LintIssue issue : relativeIssues) {
+      handle(issue, ruleFilter, handler);
+    }
+    for (String directory : directories(baseDirs)) {
+      for (List<LintIssue> issues : under(issuesByAbsolutePath, directory)) {
+        for (LintIssue issue : issues) {
+          handle(issue, ruleFilter, handler);
+        }
+      }
+    }
+  }
+
+  /**
+   * Normalized paths of the given directories, without those nested in another one.
+   */
+  static List<String> directories(Collection<File> baseDirs) {
+    Set<String> paths = Sets.newTreeSet();
+    for (File baseDir : baseDirs) {
+      paths.add(normalize(baseDir.getAbsolutePath()));
+    }
+    List<String> directories = Lists.newArrayList();
+    for (String path : paths) {
+      if (!isNested(path, directories)) {
+        directories.add(path);
+      }
+    }
+    return directories;
+  }
+
+  /**
+   * Values of the normalized paths located under the given normalized directory.
+   */
+  static <V> Collection<V> under(NavigableMap<String, V> valuesByPath, String directory) {
+    return valuesByPath.subMap(directory + SEPARATOR, true, directory + AFTER_SEPARATOR, false).values();
+  }
+
+  private static boolean isNested(String directory, List<String> directories) {
+    for (String parent : directories) {
+      if (directory.startsWith(parent + SEPARATOR)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void handle(LintIssue issue, Predicate<String> ruleFilter, LintReportReader.IssueHandler handler) {
+    if (ruleFilter.apply(issue.id)) {
+      handler.handle(issue);
+    }
+  }
+
+  static String normalize(String path) {
+    String normalized = FilenameUtils.normalizeNoEndSeparator(path, true);
+    return normalized == null ? path.replace('\\', SEPARATOR) : normalized;
+  }
+
+  static class Builder implements LintReportReader.IssueHandler {
+    private final List<LintIssue> relativeIssues = Lists.newArrayList();
+    private final NavigableMap<String, List<LintIssue>> issuesByAbsolutePath = Maps.newTreeMap();
+    private int size;
+
+    @Override
+    public void handle(LintIssue lintIssue) {
+      for (LintLocation location : lintIssue.locations) {
+        // readers reuse the issue they hand over
+        LintIssue issue = new LintIssue(lintIssue.id, lintIssue.message, ImmutableList.of(location.copy()));
+        if (new File(location.file).isAbsolute()) {
+          String path = normalize(location.file);
+          List<LintIssue> issues = issuesByAbsolutePath.get(path);
+          if (issues == null) {
+            issues = Lists.newArrayList();
+            issuesByAbsolutePath.put(path, issues);
+          }
+          issues.add(issue);
+        } else {
+          relativeIssues.add(issue);
+        }
+        size++;
+      }
+    }
+
+    ParsedLintReport build() {
+      for (Map.Entry<String, List<LintIssue>> entry : issuesByAbsolutePath.entrySet()) {
+        entry.setValue(ImmutableList.copyOf(entry.getValue()));
+      }
+      return new ParsedLintReport(ImmutableList.copyOf(relativeIssues), issuesByAbsolutePath, size);
+    }
+  }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.rule.RuleKey;
+
+import javax.annotation.Nullable;
+
+/**
+ * Location of a lint issue once its rule and file have been resolved, ready to be reported.
+ */
+class ResolvedIssue {
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  /**
+   * Line of issues on a whole file, where issues are stored as ints.
+   */
+  static final int NO_LINE = -1;
+
+  final InputFile inputFile;
+  final RuleKey ruleKey;
+  final String message;
+  final Integer line;
+
+  ResolvedIssue(InputFile inputFile, RuleKey ruleKey, String message, @Nullable Integer line) {
+    this.inputFile = inputFile;
+    this.ruleKey = ruleKey;
+    this.message = message;
+    this.line = line;
+  }
+
+  /**
+   * 64-bit hash of rule, file, line and message, identifying the same finding coming from several reports, or listed
+   * several times in one report.
+   * Computed from the characters in place, without allocating.
+   */
+  long fingerprint() {
+    long hash = FNV_OFFSET_BASIS;
+    hash = hash(hash, ruleKey.repository());
+    hash = hash(hash, ruleKey.rule());
+    hash = hash(hash, inputFile.relativePath());
+    hash = hash(hash, message);
+    hash = (hash ^ (line == null ? NO_LINE : line)) * FNV_PRIME;
+    // final avalanche of MurmurHash3, so that all the bits depend on the last inputs
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  private static long hash(long hash, String value) {
+    long h = hash;
+    for (int i = 0; i < value.length(); i++) {
+      h = (h ^ value.charAt(i)) * FNV_PRIME;
+    }
+    // separator, so that ("ab", "c") and ("a", "bc") differ
+    return (h ^ 0xffff) * FNV_PRIME;
+  }
+}
@@ -0,0 +1,381 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.android.tools.lint.detector.api.Severity;
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.InputSupplier;
+import com.google.common.io.Resources;
+import org.apache.commons.io.IOUtils;
+import org.sonar.api.rule.RuleStatus;
+import org.sonar.api.server.debt.DebtRemediationFunction;
+import org.sonar.api.server.rule.RulesDefinition;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compiled form of the android lint rules: rule metadata, remediation model, default profile and the default
+ * lint severity and priority of each rule, as found in the lint registry at generation time.
+ * It is generated at build time by lint-rules-gen from rules.xml, java-model.xml and android_lint_sonar_way.xml,
+ * so that the plugin can define its rules without parsing any XML. Those XML files are not shipped with the plugin.
+ * <p>
+ * The HTML descriptions make up most of the catalog but are only needed to define the rules: they are kept in a
+ * separate deflated section, after the metadata, which {@link #load()} does not read. Only
+ * {@link #define(RulesDefinition.NewRepository)} inflates them, and the catalog does not keep them.
+ */
+public final class RuleCatalog {
+
+  public static final String CATALOG_PATH = "/org/sonar/plugins/android/lint/rules.bin";
+
+  private static final int MAGIC = 0x414c5243;
+  private static final int VERSION = 5;
+
+  private final String profileName;
+  private final String profileLanguage;
+  private final List<String> profileRuleKeys;
+  private final List<Rule> rules;
+  private final Map<String, Rule> rulesByKey;
+  private final List<String> htmlDescriptions;
+  private final InputSupplier<? extends InputStream> source;
+
+  /**
+   * Catalog compiled from the XML sources, the HTML descriptions being given in the order of the rules.
+   */
+  public RuleCatalog(String profileName, String profileLanguage, List<String> profileRuleKeys, List<Rule> rules, List<String> htmlDescriptions) {
+    this(profileName, profileLanguage, profileRuleKeys, rules, ImmutableList.copyOf(htmlDescriptions), null);
+    Preconditions.checkArgument(htmlDescriptions.size() == rules.size(), "One description is expected per rule");
+  }
+
+  private RuleCatalog(String profileName, String profileLanguage, List<String> profileRuleKeys, List<Rule> rules,
+    @Nullable List<String> htmlDescriptions, @Nullable InputSupplier<? extends InputStream> source) {
+    this.profileName = profileName;
+    this.profileLanguage = profileLanguage;
+    this.profileRuleKeys = ImmutableList.copyOf(profileRuleKeys);
+    this.rules = ImmutableList.copyOf(rules);
+    this.rulesByKey = Maps.uniqueIndex(rules, new Function<Rule, String>() {
+      @Override
+      public String apply(Rule rule) {
+        return rule.key;
+      }
+    });
+    this.htmlDescriptions = htmlDescriptions;
+    this.source = source;
+  }
+
+  public String profileName() {
+    return profileName;
+  }
+
+  public String profileLanguage() {
+    return profileLanguage;
+  }
+
+  public List<String> profileRuleKeys() {
+    return profileRuleKeys;
+  }
+
+  public List<Rule> rules() {
+    return rules;
+  }
+
+  @CheckForNull
+  public Rule rule(String key) {
+    return rulesByKey.get(key);
+  }
+
+  /**
+   * Loads the metadata of the catalog bundled with the plugin, leaving its descriptions section unread.
+   */
+  public static RuleCatalog load() {
+    URL url = RuleCatalog.class.getResource(CATALOG_PATH);
+    if (url == null) {
+      throw new IllegalStateException("Rule catalog not found: " + CATALOG_PATH);
+    }
+    try {
+      return read(Resources.newInputStreamSupplier(url));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to load rule catalog " + CATALOG_PATH, e);
+    }
+  }
+
+  /**
+   * Reads the metadata section only: the source is opened again when the descriptions are needed.
+   */
+  static RuleCatalog read(InputSupplier<? extends InputStream> source) throws IOException {
+    InputStream input = source.getInput();
+    try {
+      DataInputStream data = new DataInputStream(new BufferedInputStream(input));
+      readHeader(data);
+      String profileName = readString(data);
+      String profileLanguage = readString(data);
+      List<String> profileRuleKeys = readStrings(data);
+      int ruleCount = data.readInt();
+      List<Rule> rules = Lists.newArrayListWithCapacity(ruleCount);
+      for (int i = 0; i < ruleCount; i++) {
+        rules.add(new Rule(readString(data), readString(data), readString(data), readStrings(data),
+          readString(data), readString(data), readString(data), readString(data), readString(data), data.readInt()));
+      }
+      return new RuleCatalog(profileName, profileLanguage, profileRuleKeys, rules, null, source);
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  /**
+   * Checks the format and returns the length of the metadata section that follows.
+   */
+  private static int readHeader(DataInputStream data) throws IOException {
+    if (data.readInt() != MAGIC) {
+      throw new IOException("Not a rule catalog");
+    }
+    int version = data.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported rule catalog version: " + version);
+    }
+    return data.readInt();
+  }
+
+  /**
+   * HTML descriptions of the rules, in the order of {@link #rules()}. Those of a loaded catalog are inflated from
+   * its descriptions section on each call.
+   */
+  List<String> htmlDescriptions() throws IOException {
+    if (htmlDescriptions != null) {
+      return htmlDescriptions;
+    }
+    InputStream input = source.getInput();
+    try {
+      DataInputStream data = new DataInputStream(new BufferedInputStream(input));
+      ByteStreams.skipFully(data, readHeader(data));
+      DataInputStream descriptions = new DataInputStream(new InflaterInputStream(data));
+      List<String> result = Lists.newArrayListWithCapacity(rules.size());
+      for (int i = 0; i < rules.size(); i++) {
+        result.add(readString(descriptions));
+      }
+      return result;
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  public void write(OutputStream output) throws IOException {
+    ByteArrayOutputStream metadataBytes = new ByteArrayOutputStream();
+    DataOutputStream metadata = new DataOutputStream(metadataBytes);
+    writeString(metadata, profileName);
+    writeString(metadata, profileLanguage);
+    writeStrings(metadata, profileRuleKeys);
+    metadata.writeInt(rules.size());
+    for (Rule rule : rules) {
+      writeString(metadata, rule.key);
+      writeString(metadata, rule.name);
+      writeString(metadata, rule.severity);
+      writeStrings(metadata, rule.tags);
+      writeString(metadata, rule.debtSubCharacteristic);
+      writeString(metadata, rule.remediationFunction);
+      writeString(metadata, rule.remediationCoefficient);
+      writeString(metadata, rule.remediationOffset);
+      writeString(metadata, rule.lintSeverity);
+      metadata.writeInt(rule.lintPriority);
+    }
+    metadata.flush();
+
+    DataOutputStream data = new DataOutputStream(output);
+    data.writeInt(MAGIC);
+    data.writeInt(VERSION);
+    data.writeInt(metadataBytes.size());
+    metadataBytes.writeTo(data);
+
+    Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+    try {
+      DeflaterOutputStream deflated = new DeflaterOutputStream(data, deflater);
+      DataOutputStream descriptions = new DataOutputStream(deflated);
+      for (String htmlDescription : htmlDescriptions()) {
+        writeString(descriptions, htmlDescription);
+      }
+      descriptions.flush();
+      deflated.finish();
+    } finally {
+      deflater.end();
+    }
+    data.flush();
+  }
+
+  /**
+   * Creates the rules of the catalog in the given repository. This is the only reader of the descriptions section.
+   */
+  public void define(RulesDefinition.NewRepository repository) {
+    Iterator<String> descriptions;
+    try {
+      descriptions = htmlDescriptions().iterator();
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read the rule descriptions of " + CATALOG_PATH, e);
+    }
+    for (Rule rule : rules) {
+      RulesDefinition.NewRule newRule = repository.createRule(rule.key)
+        .setName(rule.name)
+        .setHtmlDescription(descriptions.next())
+        .setSeverity(rule.severity)
+        .setTags(rule.tags.toArray(new String[rule.tags.size()]));
+      if (rule.debtSubCharacteristic != null) {
+        newRule.setDebtSubCharacteristic(rule.debtSubCharacteristic);
+      }
+      if (rule.remediationFunction != null) {
+        newRule.setDebtRemediationFunction(remediationFunction(newRule.debtRemediationFunctions(), rule));
+      }
+    }
+  }
+
+  private static DebtRemediationFunction remediationFunction(RulesDefinition.DebtRemediationFunctions functions, Rule rule) {
+    switch (DebtRemediationFunction.Type.valueOf(rule.remediationFunction)) {
+      case LINEAR:
+        return functions.linear(rule.remediationCoefficient);
+      case LINEAR_OFFSET:
+        return functions.linearWithOffset(rule.remediationCoefficient, rule.remediationOffset);
+      case CONSTANT_ISSUE:
+      default:
+        return functions.constantPerIssue(rule.remediationOffset);
+    }
+  }
+
+  private static void writeStrings(DataOutputStream data, Collection<String> values) throws IOException {
+    data.writeInt(values.size());
+    for (String value : values) {
+      writeString(data, value);
+    }
+  }
+
+  private static List<String> readStrings(DataInputStream data) throws IOException {
+    int size = data.readInt();
+    List<String> values = Lists.newArrayListWithCapacity(size);
+    for (int i = 0; i < size; i++) {
+      values.add(readString(data));
+    }
+    return values;
+  }
+
+  /**
+   * Strings are stored as a length prefixed UTF-8 sequence, -1 standing for null: unlike
+   * {@link DataOutputStream#writeUTF(String)}, this is not limited to 64 KB.
+   */
+  private static void writeString(DataOutputStream data, @Nullable String value) throws IOException {
+    if (value == null) {
+      data.writeInt(-1);
+    } else {
+      byte[] bytes = value.getBytes(Charsets.UTF_8);
+      data.writeInt(bytes.length);
+      data.write(bytes);
+    }
+  }
+
+  @CheckForNull
+  private static String readString(DataInputStream data) throws IOException {
+    int length = data.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    data.readFully(bytes);
+    return new String(bytes, Charsets.UTF_8);
+  }
+
+  public static final class Rule {
+    private final String key;
+    private final String name;
+    private final String severity;
+    private final List<String> tags;
+    private final String debtSubCharacteristic;
+    private final String remediationFunction;
+    private final String remediationCoefficient;
+    private final String remediationOffset;
+    private final String lintSeverity;
+    private final int lintPriority;
+
+    private Rule(String key, String name, String severity, Collection<String> tags, @Nullable String debtSubCharacteristic,
+      @Nullable String remediationFunction, @Nullable String remediationCoefficient, @Nullable String remediationOffset,
+      String lintSeverity, int lintPriority) {
+      this.key = key;
+      this.name = name;
+      this.severity = severity;
+      this.tags = ImmutableList.copyOf(tags);
+      this.debtSubCharacteristic = debtSubCharacteristic;
+      this.remediationFunction = remediationFunction;
+      this.remediationCoefficient = remediationCoefficient;
+      this.remediationOffset = remediationOffset;
+      this.lintSeverity = lintSeverity;
+      this.lintPriority = lintPriority;
+    }
+
+    /**
+     * Compiles a rule loaded from its XML definition, along with the default severity and priority of its lint issue.
+     * Its HTML description is given to the catalog separately.
+     */
+    public static Rule of(RulesDefinition.Rule rule, Severity lintSeverity, int lintPriority) {
+      if (!rule.params().isEmpty() || rule.template() || rule.internalKey() != null || rule.status() != RuleStatus.defaultStatus()) {
+        throw new IllegalArgumentException("Rule " + rule.key() + " uses features not supported by the rule catalog");
+      }
+      DebtRemediationFunction function = rule.debtRemediationFunction();
+      return new Rule(rule.key(), rule.name(), rule.severity(), rule.tags(), rule.debtSubCharacteristic(),
+        function == null ? null : function.type().name(),
+        function == null ? null : function.coefficient(),
+        function == null ? null : function.offset(),
+        lintSeverity.name(), lintPriority);
+    }
+
+    public String key() {
+      return key;
+    }
+
+    public String severity() {
+      return severity;
+    }
+
+    public Severity lintSeverity() {
+      return Severity.valueOf(lintSeverity);
+    }
+
+    public int lintPriority() {
+      return lintPriority;
+    }
+  }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import org.junit.Test;
+import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.rules.ActiveRule;
+
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ActiveRuleIndexTest {
+
+  @Test
+  public void should_look_up_active_rules_once() throws Exception {
+    RulesProfile profile = mock(RulesProfile.class);
+    List<ActiveRule> activeRules = AndroidLintProcessorTest.activeRules("ContentDescription", "HardcodedText");
+    when(profile.getActiveRulesByRepository(AndroidLintRulesDefinition.REPOSITORY_KEY)).thenReturn(activeRules);
+
+    ActiveRuleIndex index = new ActiveRuleIndex(profile);
+
+    assertThat(index.ruleKey("ContentDescription")).isEqualTo(activeRules.get(0).getRule().ruleKey());
+    assertThat(index.ruleKey("HardcodedText")).isEqualTo(activeRules.get(1).getRule().ruleKey());
+    assertThat(index.ruleKey("Unknown")).isNull();
+    verify(profile, times(1)).getActiveRulesByRepository(AndroidLintRulesDefinition.REPOSITORY_KEY);
+    verify(profile, never()).getActiveRule(anyString(), anyString());
+  }
+
+  @Test
+  public void should_filter_out_inactive_rules() throws Exception {
+    RulesProfile profile = mock(RulesProfile.class);
+    List<ActiveRule> activeRules = AndroidLintProcessorTest.activeRules("ContentDescription");
+    when(profile.getActiveRulesByRepository(AndroidLintRulesDefinition.REPOSITORY_KEY)).thenReturn(activeRules);
+
+    ActiveRuleIndex index = new ActiveRuleIndex(profile);
+
+    assertThat(index.apply("ContentDescription")).isTrue();
+    assertThat(index.apply("Unknown")).isFalse();
+    assertThat(index.apply("Unknown")).isFalse();
+    index.logSkippedIssues();
+  }
+
+}
@@ -19,26 +19,37 @@
  */
 package org.sonar.plugins.android.lint;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
 import org.fest.assertions.Fail;
 import org.junit.Before;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
-import org.sonar.api.batch.fs.FilePredicate;
-import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
 import org.sonar.api.batch.fs.InputPath;
 import org.sonar.api.batch.fs.internal.DefaultFileSystem;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.config.Settings;
 import org.sonar.api.issue.Issuable;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.rules.ActiveRule;
 import org.sonar.api.rules.Rule;
+import org.sonar.plugins.android.AndroidPlugin;
+
+import javax.annotation.Nullable;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
+import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.RETURNS_DEFAULTS;
@@ -50,6 +61,30 @@ import static org.mockito.Mockito.when;
 
 public class AndroidLintProcessorTest {
 
+  static final String[] REPORTED_RULE_KEYS = {"ContentDescription", "DefaultLocale", "ExportedActivity", "ExportedContentProvider", "IconDensities",
+    "IconDipSize", "IconDuplicates", "IconDuplicatesConfig", "MissingRegistered", "OldTargetApi", "Overdraw", "ScrollViewSize", "UnusedResources",
+    "NewApi", "RtlHardcoded", "SuspiciousImport"};
+
+  // locations of lint-report.xml, relative to the base directory, with the directories some issues are located on
+  static final String[] RELATIVE_REPORT_PATHS = {"AndroidManifest.xml", "res/drawable-hdpi", "res/drawable-hdpi/profile_anonymous.jpeg",
+    "res/drawable-hdpi/profile_anonymous_thumb.jpeg", "res/drawable-mdpi", "res/drawable-mdpi/grey_background_pattern_tile.png",
+    "res/drawable-mdpi/profile_anonymous.jpeg", "res/drawable-mdpi/profile_anonymous_thumb.jpeg", "res/drawable-xhdpi/grey_background_pattern_tile.png",
+    "res/drawable-xhdpi/profile_anonymous.jpeg", "res/drawable-xhdpi/profile_anonymous_thumb.jpeg", "res/layout-sw600dp/activity_octolist.xml",
+    "res/layout-sw600dp/fragment_emptydetail.xml", "res/layout/activity_splashscreen.xml", "res/layout/fragment_octodetail.xml",
+    "res/layout/view_cell_octo.xml", "res/values/strings.xml", "src\\com\\michaelnovakjr\\numberpicker\\NumberPicker.java"};
+  // base directory of the absolute locations of lint-results_absolute_path.xml, and their paths relative to it
+  static final File SAMPLE_APP = new File("/home/benzonico/Development/SonarSource/sonar-tests-languages/it-android/projects/SonarAndroidSample/app");
+  private static final String[] ABSOLUTE_REPORT_PATHS = {"src/main/java/org/sonarsource/app/TestViolations.java",
+    "src/main/res/layout/fragment_main.xml"};
+
+  // one issue per location of lint-report.xml
+  static final int RELATIVE_REPORT_ISSUES = 30;
+  // lint-results_absolute_path.xml lists each of its 4 findings twice, at the same line and column: they are reported once
+  private static final int ABSOLUTE_REPORT_ISSUES = 4;
+
+  @org.junit.Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   private ResourcePerspectives perspectives;
   private DefaultFileSystem fs;
   private RulesProfile rulesProfile;
@@ -58,16 +93,10 @@ public class AndroidLintProcessorTest {
   public void setUp() throws Exception {
     // Setup mocks
     rulesProfile = mock(RulesProfile.class);
-    ActiveRule activeRule = mock(ActiveRule.class);
-    when(activeRule.getRule()).thenReturn(Rule.create("repoKey", "ruleKey"));
-    when(rulesProfile.getActiveRule(anyString(), anyString())).thenReturn(activeRule);
-
-    fs = new DefaultFileSystem(new File("")) {
-      @Override
-      public Iterable<InputFile> inputFiles(FilePredicate predicate) {
-        return Lists.<InputFile>newArrayList(new DefaultInputFile("relativePath"));
-      }
-    };
+    List<ActiveRule> activeRules = activeRules(REPORTED_RULE_KEYS);
+    when(rulesProfile.getActiveRulesByRepository(AndroidLintRulesDefinition.REPOSITORY_KEY)).thenReturn(activeRules);
+
+    fs = fileSystem(new File(""));
     perspectives = mock(ResourcePerspectives.class);
   }
 
@@ -87,9 +116,11 @@ public class AndroidLintProcessorTest {
     // Process report
     new AndroidLintProcessor(rulesProfile, perspectives, fs).process(new File("src/test/resources/lint-report.xml"));
 
-    // Check we raise 30 issues on 21 different rules
-    verify(rulesProfile, times(21)).getActiveRule(anyString(), anyString());
-    verify(perspectives, times(30)).as(any(Class.class), any(InputPath.class));
+    // Active rules are looked up once for the whole report
+    verify(rulesProfile, times(1)).getActiveRulesByRepository(AndroidLintRulesDefinition.REPOSITORY_KEY);
+    verify(rulesProfile, never()).getActiveRule(anyString(), anyString());
+    // the issuable of each file is looked up once
+    verify(perspectives, times(RELATIVE_REPORT_PATHS.length)).as(any(Class.class), any(InputPath.class));
   }
 
   @Test
@@ -97,9 +128,11 @@ public class AndroidLintProcessorTest {
     // Process report
     new AndroidLintProcessor(rulesProfile, perspectives, fs).process(new File("src/test/resources/lint-results_absolute_path.xml"));
 
-    // Check we raise 8 issues on 8 different rules
-    verify(rulesProfile, times(8)).getActiveRule(anyString(), anyString());
-    verify(perspectives, times(8)).as(any(Class.class), any(InputPath.class));
+    // Active rules are looked up once for the whole report
+    verify(rulesProfile, times(1)).getActiveRulesByRepository(AndroidLintRulesDefinition.REPOSITORY_KEY);
+    verify(rulesProfile, never()).getActiveRule(anyString(), anyString());
+    // the issuable of each file is looked up once
+    verify(perspectives, times(ABSOLUTE_REPORT_PATHS.length)).as(any(Class.class), any(InputPath.class));
   }
 
   @Test
@@ -117,21 +150,367 @@ public class AndroidLintProcessorTest {
 
     new AndroidLintProcessor(rulesProfile, perspectives, fs).process(new File("src/test/resources/lint-report.xml"));
 
-    verify(perspectives, times(30)).as(any(Class.class), any(InputPath.class));
-    verify(issuable, times(30)).addIssue(any(Issue.class));
+    // Check we raise 30 issues, looking up the issuable of each file once
+    verify(perspectives, times(RELATIVE_REPORT_PATHS.length)).as(any(Class.class), any(InputPath.class));
+    verify(issuable, times(RELATIVE_REPORT_ISSUES)).addIssue(any(Issue.class));
+  }
+
+  @Test
+  public void concurrent_processing_should_report_same_issues() throws Exception {
+    Issuable issuable = mock(Issuable.class);
+    when(perspectives.as(any(Class.class), any(InputPath.class))).thenReturn(issuable);
+    when(issuable.newIssueBuilder()).thenReturn( mock(Issuable.IssueBuilder.class, new SelfReturningAnswer()));
+    Settings settings = new Settings();
+    settings.setProperty(AndroidPlugin.LINT_THREADS_PROPERTY, 4);
+
+    new AndroidLintProcessor(rulesProfile, perspectives, fs, settings).process(new File("src/test/resources/lint-report.xml"));
+
+    verify(rulesProfile, never()).getActiveRule(anyString(), anyString());
+    // Check we raise 30 issues, looking up the issuable of each file once
+    verify(perspectives, times(RELATIVE_REPORT_PATHS.length)).as(any(Class.class), any(InputPath.class));
+    verify(issuable, times(RELATIVE_REPORT_ISSUES)).addIssue(any(Issue.class));
+  }
+
+  @Test
+  public void several_reports_should_be_merged_and_a_bad_one_skipped() throws Exception {
+    Issuable issuable = mock(Issuable.class);
+    when(perspectives.as(any(Class.class), any(InputPath.class))).thenReturn(issuable);
+    when(issuable.newIssueBuilder()).thenReturn( mock(Issuable.IssueBuilder.class, new SelfReturningAnswer()));
+
+    new AndroidLintProcessor(rulesProfile, perspectives, fs).process(Lists.newArrayList(
+      new File("src/test/resources/lint-report.xml"),
+      new File("src/test/resources/lint-bad-report.xml"),
+      new File("src/test/resources/lint-results_absolute_path.xml")));
+
+    // Active rules are looked up once for all the reports
+    verify(rulesProfile, times(1)).getActiveRulesByRepository(AndroidLintRulesDefinition.REPOSITORY_KEY);
+    verify(perspectives, times(RELATIVE_REPORT_PATHS.length + ABSOLUTE_REPORT_PATHS.length)).as(any(Class.class), any(InputPath.class));
+    verify(issuable, times(RELATIVE_REPORT_ISSUES + ABSOLUTE_REPORT_ISSUES)).addIssue(any(Issue.class));
+  }
+
+  @Test
+  public void same_issues_of_several_reports_should_be_reported_once() throws Exception {
+    Issuable issuable = mock(Issuable.class);
+    when(perspectives.as(any(Class.class), any(InputPath.class))).thenReturn(issuable);
+    when(issuable.newIssueBuilder()).thenReturn( mock(Issuable.IssueBuilder.class, new SelfReturningAnswer()));
+    Settings settings = new Settings();
+    settings.setProperty(AndroidPlugin.LINT_THREADS_PROPERTY, 4);
+
+    new AndroidLintProcessor(rulesProfile, perspectives, fs, settings).process(Lists.newArrayList(
+      new File("src/test/resources/lint-report.xml"),
+      new File("src/test/resources/lint-report.xml"),
+      new File("src/test/resources/lint-report.xml")));
+
+    verify(issuable, times(RELATIVE_REPORT_ISSUES)).addIssue(any(Issue.class));
+  }
+
+  @Test
+  public void same_finding_of_one_report_should_be_reported_once() throws Exception {
+    File report = temp.newFile("lint-results.xml");
+    String location = "<location file=\"AndroidManifest.xml\" line=\"35\" column=\"%d\"/>";
+    FileUtils.write(report, "<issues>"
+      + "<issue id=\"ExportedActivity\" message=\"Exported\">" + String.format(location, 9) + "</issue>"
+      + "<issue id=\"ExportedActivity\" message=\"Exported\">" + String.format(location, 17) + "</issue>"
+      + "<issue id=\"ExportedActivity\" message=\"Exported\">" + String.format(location, 17).replace("35", "36") + "</issue>"
+      + "</issues>", Charsets.UTF_8.name());
+
+    // issues have no column: the first two are the same issue
+    assertThat(reportedIssues(new Settings(), Lists.newArrayList(report))).containsExactly(
+      "ruleKey=[android-lint:ExportedActivity] message=[Exported] line=[35] ",
+      "ruleKey=[android-lint:ExportedActivity] message=[Exported] line=[36] ");
   }
 
+  @Test
+  public void modules_should_share_parsed_reports() throws Exception {
+    File appDir = SAMPLE_APP;
+    File report = new File("src/test/resources/lint-results_absolute_path.xml");
+    LintReportCache cache = new LintReportCache(LintReportCacheTest.reactor(report, appDir, new File(appDir.getParentFile(), "lib")));
+
+    Issuable appIssuable = mock(Issuable.class);
+    ResourcePerspectives appPerspectives = mock(ResourcePerspectives.class);
+    when(appPerspectives.as(any(Class.class), any(InputPath.class))).thenReturn(appIssuable);
+    when(appIssuable.newIssueBuilder()).thenReturn(mock(Issuable.IssueBuilder.class, new SelfReturningAnswer()));
+    new AndroidLintProcessor(rulesProfile, appPerspectives, fileSystem(appDir), new Settings(), cache).process(report);
+    verify(appIssuable, times(ABSOLUTE_REPORT_ISSUES)).addIssue(any(Issue.class));
+
+    ResourcePerspectives libPerspectives = mock(ResourcePerspectives.class);
+    new AndroidLintProcessor(rulesProfile, libPerspectives, new DefaultFileSystem(new File(appDir.getParentFile(), "lib")), new Settings(), cache)
+      .process(report);
+    verify(libPerspectives, never()).as(any(Class.class), any(InputPath.class));
+  }
+
+  @Test
+  public void compressed_reports_should_be_processed() throws Exception {
+    Issuable issuable = mock(Issuable.class);
+    when(perspectives.as(any(Class.class), any(InputPath.class))).thenReturn(issuable);
+    when(issuable.newIssueBuilder()).thenReturn( mock(Issuable.IssueBuilder.class, new SelfReturningAnswer()));
+    File gzipped = LintReportFilesTest.gzip(temp.newFile("lint-results.xml.gz"),
+      FileUtils.readFileToByteArray(new File("src/test/resources/lint-report.xml")));
+    File archive = LintReportFilesTest.zip(temp.newFile("reports.zip"), "app/lint-results.xml",
+      FileUtils.readFileToByteArray(new File("src/test/resources/lint-results_absolute_path.xml")));
+
+    new AndroidLintProcessor(rulesProfile, perspectives, fs).process(Lists.newArrayList(
+      gzipped, LintReportFiles.archiveEntry(archive, "app/lint-results.xml")));
+
+    verify(issuable, times(RELATIVE_REPORT_ISSUES + ABSOLUTE_REPORT_ISSUES)).addIssue(any(Issue.class));
+  }
+
+  @Test
+  public void mapped_reports_should_report_same_issues() throws Exception {
+    Issuable issuable = mock(Issuable.class);
+    when(perspectives.as(any(Class.class), any(InputPath.class))).thenReturn(issuable);
+    when(issuable.newIssueBuilder()).thenReturn( mock(Issuable.IssueBuilder.class, new SelfReturningAnswer()));
+    Settings settings = new Settings();
+    settings.setProperty(AndroidPlugin.LINT_ENGINE_PROPERTY, AndroidPlugin.LINT_ENGINE_MMAP);
+
+    new AndroidLintProcessor(rulesProfile, perspectives, fs, settings).process(new File("src/test/resources/lint-report.xml"));
+
+    verify(issuable, times(RELATIVE_REPORT_ISSUES)).addIssue(any(Issue.class));
+  }
+
+  @Test
+  public void memory_budget_should_report_same_issues() throws Exception {
+    Issuable issuable = mock(Issuable.class);
+    when(perspectives.as(any(Class.class), any(InputPath.class))).thenReturn(issuable);
+    when(issuable.newIssueBuilder()).thenReturn( mock(Issuable.IssueBuilder.class, new SelfReturningAnswer()));
+    Settings settings = new Settings();
+    settings.setProperty(AndroidPlugin.LINT_MAX_MEMORY_PROPERTY, 1);
+    fs.setWorkDir(temp.newFolder());
+
+    new AndroidLintProcessor(rulesProfile, perspectives, fs, settings).process(Lists.newArrayList(
+      new File("src/test/resources/lint-report.xml"),
+      new File("src/test/resources/lint-results_absolute_path.xml")));
+
+    verify(perspectives, times(RELATIVE_REPORT_PATHS.length + ABSOLUTE_REPORT_PATHS.length)).as(any(Class.class), any(InputPath.class));
+    verify(issuable, times(RELATIVE_REPORT_ISSUES + ABSOLUTE_REPORT_ISSUES)).addIssue(any(Issue.class));
+  }
+
+  @Test
+  public void memory_budget_should_report_issues_of_batch_mode() throws Exception {
+    List<File> reports = Lists.newArrayList(new File("src/test/resources/lint-report.xml"), new File("src/test/resources/lint-results_absolute_path.xml"));
+    List<String> batchIssues = reportedIssues(new Settings(), reports);
+    Settings settings = new Settings();
+    settings.setProperty(AndroidPlugin.LINT_MAX_MEMORY_PROPERTY, 1);
+    fs.setWorkDir(temp.newFolder());
+    List<String> budgetIssues = reportedIssues(settings, reports);
+
+    assertThat(batchIssues).hasSize(RELATIVE_REPORT_ISSUES + ABSOLUTE_REPORT_ISSUES);
+    assertThat(budgetIssues).isEqualTo(batchIssues);
+  }
+
+  @Test
+  public void indexed_reports_should_report_issues_of_module() throws Exception {
+    File report = new File(temp.newFolder(), "lint-results.xml");
+    FileUtils.copyFile(new File("src/test/resources/lint-results_absolute_path.xml"), report);
+    File relativeReport = new File(report.getParentFile(), "lint-report.xml");
+    FileUtils.copyFile(new File("src/test/resources/lint-report.xml"), relativeReport);
+    List<File> reports = Lists.newArrayList(report, relativeReport);
+    // base directory of the absolute paths of the report
+    File project = SAMPLE_APP.getParentFile();
+    fs = fileSystem(new File(project, "app"));
+    List<String> expected = reportedIssues(new Settings(), reports);
+    Settings settings = new Settings();
+    settings.setProperty(AndroidPlugin.LINT_REPORT_INDEX_PROPERTY, true);
+    // each module has its own work directory
+    File appWorkDir = temp.newFolder();
+    fs.setWorkDir(appWorkDir);
+    ProjectReactor reactor = LintReportCacheTest.reactor(report, new File(project, "app"), new File(project, "lib"));
+    File rootWorkDir = temp.newFolder();
+    reactor.getRoot().setWorkDir(rootWorkDir);
+    LintReportCache cache = new LintReportCache(reactor);
+    File indexDir = new File(rootWorkDir, "android-lint");
+
+    // indexed while read by the first module, in the work directory of the root module, then read through the index
+    assertThat(reportedIssues(settings, reports, cache)).isEqualTo(expected);
+    File index = LintReportIndex.indexFile(indexDir, report);
+    assertThat(index).exists();
+    assertThat(LintReportIndex.indexFile(indexDir, relativeReport)).exists();
+    assertThat(report.getParentFile().list()).containsOnly(report.getName(), relativeReport.getName());
+    assertThat(appWorkDir.list()).isEmpty();
+    assertThat(reportedIssues(settings, reports, cache)).isEqualTo(expected);
+
+    // the other module reads through the same index, and skips the issues located in another module
+    long indexed = index.lastModified() - 10000;
+    index.setLastModified(indexed);
+    fs = fileSystem(new File(project, "lib"));
+    File libWorkDir = temp.newFolder();
+    fs.setWorkDir(libWorkDir);
+    assertThat(reportedIssues(settings, reports, cache)).hasSize(RELATIVE_REPORT_ISSUES);
+    assertThat(index.lastModified()).isEqualTo(indexed);
+    assertThat(libWorkDir.list()).isEmpty();
+  }
+
+  @Test
+  public void reports_should_not_be_indexed_without_work_directory_of_root_module() throws Exception {
+    File report = new File("src/test/resources/lint-report.xml");
+    Settings settings = new Settings();
+    settings.setProperty(AndroidPlugin.LINT_REPORT_INDEX_PROPERTY, true);
+    File workDir = temp.newFolder();
+    fs.setWorkDir(workDir);
+    LintReportCache cache = new LintReportCache(LintReportCacheTest.reactor(report, fs.baseDir(), temp.newFolder("lib")));
+
+    assertThat(reportedIssues(settings, Lists.newArrayList(report), cache)).hasSize(RELATIVE_REPORT_ISSUES);
+    assertThat(workDir.list()).isEmpty();
+  }
+
+  @Test
+  public void unchanged_reports_should_be_replayed_from_cache() throws Exception {
+    List<File> reports = Lists.newArrayList(new File("src/test/resources/lint-report.xml"), new File("src/test/resources/lint-results_absolute_path.xml"));
+    List<String> expected = reportedIssues(new Settings(), reports);
+    Settings settings = new Settings();
+    settings.setProperty(AndroidPlugin.LINT_REPLAY_CACHE_PROPERTY, true);
+    File workDir = temp.newFolder();
+    fs.setWorkDir(workDir);
+    File cache = new File(workDir, "android-lint/" + IssueReplayCache.FILE_NAME);
+
+    assertThat(reportedIssues(settings, reports)).isEqualTo(expected);
+    assertThat(cache).exists();
+    long recorded = cache.lastModified();
+    assertThat(reportedIssues(settings, reports)).isEqualTo(expected);
+    assertThat(cache.lastModified()).isEqualTo(recorded);
+
+    // other active rules: the reports are processed again
+    List<ActiveRule> activeRules = activeRules("ContentDescription");
+    when(rulesProfile.getActiveRulesByRepository(AndroidLintRulesDefinition.REPOSITORY_KEY)).thenReturn(activeRules);
+    assertThat(reportedIssues(settings, reports)).hasSize(3);
+    assertThat(reportedIssues(settings, reports)).hasSize(3);
+  }
+
+  @Test
+  public void replayed_reports_should_not_be_kept_for_other_modules() throws Exception {
+    File report = new File("src/test/resources/lint-report.xml");
+    Settings settings = new Settings();
+    settings.setProperty(AndroidPlugin.LINT_REPLAY_CACHE_PROPERTY, true);
+    fs.setWorkDir(temp.newFolder());
+    List<String> expected = reportedIssues(settings, Lists.newArrayList(report));
+
+    File lib = temp.newFolder("lib");
+    LintReportCache cache = new LintReportCache(LintReportCacheTest.reactor(report, fs.baseDir(), lib));
+    ResourcePerspectives appPerspectives = mock(ResourcePerspectives.class);
+    Issuable issuable = mock(Issuable.class);
+    when(appPerspectives.as(any(Class.class), any(InputPath.class))).thenReturn(issuable);
+    RecordingAnswer recorder = new RecordingAnswer();
+    when(issuable.newIssueBuilder()).thenReturn(mock(Issuable.IssueBuilder.class, recorder));
+    new AndroidLintProcessor(rulesProfile, appPerspectives, fs, settings, cache).process(report);
+    Collections.sort(recorder.issues);
+    assertThat(recorder.issues).isEqualTo(expected);
+
+    // the other module is the last one to read the report: it is streamed rather than parsed and kept
+    assertThat(cache.report(report, new LintReportScanner(), new ActiveRuleIndex(rulesProfile))).isNull();
+  }
+
+  @Test
+  public void cached_issues_should_not_be_replayed_when_input_files_change() throws Exception {
+    List<File> reports = Lists.newArrayList(new File("src/test/resources/lint-report.xml"));
+    List<String> expected = reportedIssues(new Settings(), reports);
+    Settings settings = new Settings();
+    settings.setProperty(AndroidPlugin.LINT_REPLAY_CACHE_PROPERTY, true);
+    File workDir = temp.newFolder();
+    File cache = new File(workDir, "android-lint/" + IssueReplayCache.FILE_NAME);
+
+    // no input file yet: nothing resolves
+    fs = new DefaultFileSystem(new File(""));
+    fs.setWorkDir(workDir);
+    assertThat(reportedIssues(settings, reports)).isEmpty();
+
+    fs = fileSystem(new File(""));
+    fs.setWorkDir(workDir);
+    assertThat(reportedIssues(settings, reports)).isEqualTo(expected);
+    byte[] recorded = FileUtils.readFileToByteArray(cache);
+
+    // other exclusions: the reports are processed again
+    settings.setProperty(CoreProperties.PROJECT_EXCLUSIONS_PROPERTY, "**/Generated.java");
+    assertThat(reportedIssues(settings, reports)).isEqualTo(expected);
+    assertThat(FileUtils.readFileToByteArray(cache)).isNotEqualTo(recorded);
+  }
+
+  @Test
+  public void issues_should_not_be_cached_when_a_report_fails() throws Exception {
+    Settings settings = new Settings();
+    settings.setProperty(AndroidPlugin.LINT_REPLAY_CACHE_PROPERTY, true);
+    File workDir = temp.newFolder();
+    fs.setWorkDir(workDir);
+
+    reportedIssues(settings, Lists.newArrayList(new File("src/test/resources/lint-report.xml"), new File("src/test/resources/lint-bad-report.xml")));
+    assertThat(new File(workDir, "android-lint/" + IssueReplayCache.FILE_NAME)).doesNotExist();
+  }
+
+  @Test
+  public void converted_reports_should_report_same_issues() throws Exception {
+    List<File> reports = Lists.newArrayList(new File("src/test/resources/lint-report.xml"), new File("src/test/resources/lint-results_absolute_path.xml"));
+    List<File> converted = Lists.newArrayList();
+    for (File report : reports) {
+      File output = new File(temp.getRoot(), report.getName() + ColumnarLintReport.EXTENSION);
+      ColumnarLintReport.convert(report, output);
+      converted.add(output);
+    }
+
+    assertThat(reportedIssues(new Settings(), converted)).isEqualTo(reportedIssues(new Settings(), reports));
+  }
+
+  /**
+   * Rule key, message and line of the issues built by the processor, sorted.
+   */
+  private List<String> reportedIssues(Settings settings, List<File> reports) throws Exception {
+    return reportedIssues(settings, reports, null);
+  }
+
+  private List<String> reportedIssues(Settings settings, List<File> reports, @Nullable LintReportCache cache) throws Exception {
+    Issuable issuable = mock(Issuable.class);
+    when(perspectives.as(any(Class.class), any(InputPath.class))).thenReturn(issuable);
+    RecordingAnswer recorder = new RecordingAnswer();
+    when(issuable.newIssueBuilder()).thenReturn(mock(Issuable.IssueBuilder.class, recorder));
+
+    new AndroidLintProcessor(rulesProfile, perspectives, fs, settings, cache).process(reports);
+
+    Collections.sort(recorder.issues);
+    return recorder.issues;
+  }
 
   @Test
   public void unknown_issue_should_not_be_reported() throws Exception {
-    when(rulesProfile.getActiveRule(anyString(), anyString())).thenReturn(null);
+    List<ActiveRule> activeRules = activeRules();
+    when(rulesProfile.getActiveRulesByRepository(AndroidLintRulesDefinition.REPOSITORY_KEY)).thenReturn(activeRules);
     new AndroidLintProcessor(rulesProfile, perspectives, fs).process(new File("src/test/resources/lint-unknown-rule-report.xml"));
 
     verify(perspectives, never()).as(any(Class.class), any(InputPath.class));
 
   }
 
-  public class SelfReturningAnswer implements Answer<Object> {
+  @Test
+  public void issues_of_inactive_rules_should_be_skipped_by_reader() throws Exception {
+    List<ActiveRule> activeRules = activeRules("ContentDescription");
+    when(rulesProfile.getActiveRulesByRepository(AndroidLintRulesDefinition.REPOSITORY_KEY)).thenReturn(activeRules);
+    new AndroidLintProcessor(rulesProfile, perspectives, fs).process(new File("src/test/resources/lint-report.xml"));
+
+    // the 3 issues of the rule are in 3 files
+    verify(perspectives, times(3)).as(any(Class.class), any(InputPath.class));
+  }
+
+  // each path of the test reports resolves to its own input file
+  static DefaultFileSystem fileSystem(File baseDir) {
+    DefaultFileSystem fs = new DefaultFileSystem(baseDir);
+    for (String path : RELATIVE_REPORT_PATHS) {
+      fs.add(new DefaultInputFile(path).setAbsolutePath(new File(baseDir, path).getAbsolutePath()));
+    }
+    for (String path : ABSOLUTE_REPORT_PATHS) {
+      fs.add(new DefaultInputFile(path).setAbsolutePath(new File(SAMPLE_APP, path).getPath()));
+    }
+    return fs;
+  }
+
+  static List<ActiveRule> activeRules(String... keys) {
+    List<ActiveRule> activeRules = Lists.newArrayList();
+    for (String key : keys) {
+      ActiveRule activeRule = mock(ActiveRule.class);
+      when(activeRule.getRuleKey()).thenReturn(key);
+      when(activeRule.getRule()).thenReturn(Rule.create(AndroidLintRulesDefinition.REPOSITORY_KEY, key));
+      activeRules.add(activeRule);
+    }
+    return activeRules;
+  }
+
+  public static class SelfReturningAnswer implements Answer<Object> {
     public Object answer(InvocationOnMock invocation) throws Throwable {
       Object mock = invocation.getMock();
       if( invocation.getMethod().getReturnType().isInstance( mock )){
@@ -143,6 +522,23 @@ public class AndroidLintProcessorTest {
     }
   }
 
+  public class RecordingAnswer extends SelfReturningAnswer {
+    final List<String> issues = Lists.newArrayList();
+    private final StringBuilder issue = new StringBuilder();
+
+    @Override
+    public Object answer(InvocationOnMock invocation) throws Throwable {
+      String method = invocation.getMethod().getName();
+      if ("build".equals(method)) {
+        issues.add(issue.toString());
+        issue.setLength(0);
+      } else {
+        issue.append(method).append('=').append(Arrays.toString(invocation.getArguments())).append(' ');
+      }
+      return super.answer(invocation);
+    }
+  }
+
 
 
 }
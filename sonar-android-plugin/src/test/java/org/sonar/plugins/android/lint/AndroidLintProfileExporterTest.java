@@ -20,6 +20,7 @@
 package org.sonar.plugins.android.lint;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.CharUtils;
 import org.custommonkey.xmlunit.Diff;
@@ -27,14 +28,15 @@ import org.custommonkey.xmlunit.XMLUnit;
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.simpleframework.xml.core.Persister;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.ActiveRule;
 import org.sonar.api.rules.Rule;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.rules.RulePriority;
 import org.sonar.api.rules.RuleQuery;
 import org.sonar.api.server.rule.RulesDefinition;
-import org.sonar.api.server.rule.RulesDefinitionXmlLoader;
 import org.sonar.api.utils.ValidationMessages;
 import org.xml.sax.SAXException;
 
@@ -44,7 +46,10 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -54,6 +59,17 @@ import static org.mockito.Mockito.when;
 
 public class AndroidLintProfileExporterTest {
 
+  private static final Map<RulePriority, String> LINT_SEVERITIES = new HashMap<RulePriority, String>();
+
+  static {
+    LINT_SEVERITIES.put(null, "Ignore");
+    LINT_SEVERITIES.put(RulePriority.INFO, "Information");
+    LINT_SEVERITIES.put(RulePriority.MINOR, "Warning");
+    LINT_SEVERITIES.put(RulePriority.MAJOR, "Error");
+    LINT_SEVERITIES.put(RulePriority.CRITICAL, "Error");
+    LINT_SEVERITIES.put(RulePriority.BLOCKER, "Fatal");
+  }
+
   @Test
   public void mime_type_is_xml() throws Exception {
     assertThat(new AndroidLintProfileExporter().getMimeType()).isEqualTo("text/xml; charset=utf-8");
@@ -84,6 +100,59 @@ public class AndroidLintProfileExporterTest {
     assertXmlAreSimilar(output, "exporter/lint-ignore.xml");
   }
 
+  @Test
+  public void exports_should_be_cached_by_rule_severities() throws Exception {
+    AndroidLintProfileExporter exporter = new AndroidLintProfileExporter();
+    List<RulesDefinition.Rule> rules = createRules();
+    StringWriter first = new StringWriter();
+    exporter.exportProfile(createRulesProfileWithActiveRules(rules), first);
+    StringWriter second = new StringWriter();
+    exporter.exportProfile(createRulesProfileWithActiveRules(rules), second);
+    assertThat(second.toString()).isEqualTo(first.toString());
+
+    RulesProfile otherSeverity = createRulesProfileWithActiveRules(rules);
+    otherSeverity.getActiveRules().get(0).setSeverity(RulePriority.BLOCKER);
+    StringWriter third = new StringWriter();
+    exporter.exportProfile(otherSeverity, third);
+    assertThat(third.toString()).isNotEqualTo(first.toString());
+    assertThat(third.toString()).contains("severity=\"Fatal\"");
+
+    StringWriter ignored = new StringWriter();
+    exporter.exportProfile(RulesProfile.create(), ignored);
+    assertXmlAreSimilar(ignored.toString(), "exporter/lint-ignore.xml");
+  }
+
+  @Test
+  public void export_should_be_byte_compatible_with_persister_output() throws Exception {
+    List<RulesDefinition.Rule> rules = createRules();
+    RulesProfile profile = createRulesProfileWithActiveRules(rules);
+    profile.getActiveRules().get(0).setSeverity(RulePriority.BLOCKER);
+    profile.getActiveRules().get(1).setSeverity(RulePriority.INFO);
+    profile.getActiveRules().get(2).setSeverity(RulePriority.MINOR);
+    profile.getActiveRules().remove(3);
+    Map<String, RulePriority> severities = Maps.newHashMap();
+    for (ActiveRule activeRule : profile.getActiveRules()) {
+      severities.put(activeRule.getRuleKey(), activeRule.getSeverity());
+    }
+    List<String> keys = Lists.newArrayList();
+    for (RulesDefinition.Rule rule : rules) {
+      keys.add(rule.key());
+    }
+    Collections.sort(keys);
+    AndroidLintProfileExporter.LintProfile lintProfile = new AndroidLintProfileExporter.LintProfile();
+    lintProfile.issues = Lists.newArrayList();
+    for (String key : keys) {
+      lintProfile.issues.add(new AndroidLintProfileExporter.LintIssue(key, LINT_SEVERITIES.get(severities.get(key)), null));
+    }
+    StringWriter expected = new StringWriter();
+    new Persister().write(lintProfile, expected);
+
+    StringWriter actual = new StringWriter();
+    new AndroidLintProfileExporter().exportProfile(profile, actual);
+
+    assertThat(actual.toString()).isEqualTo(expected.toString());
+  }
+
   private int nbOfIssues(String output) {
     int count = 0;
     int lastIndex = 0;
@@ -108,7 +177,7 @@ public class AndroidLintProfileExporterTest {
 
   private List<RulesDefinition.Rule> createRules() {
     RulesDefinition.Context context = new RulesDefinition.Context();
-    new AndroidLintRulesDefinition(new RulesDefinitionXmlLoader()).define(context);
+    new AndroidLintRulesDefinition().define(context);
     return context.repository("android-lint").rules();
   }
 
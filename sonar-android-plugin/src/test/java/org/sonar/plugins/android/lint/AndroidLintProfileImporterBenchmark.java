@@ -0,0 +1,66 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.android.tools.lint.checks.BuiltinIssueRegistry;
+import org.simpleframework.xml.core.Persister;
+import org.sonar.plugins.android.lint.AndroidLintProfileExporter.LintIssue;
+import org.sonar.plugins.android.lint.AndroidLintProfileExporter.LintProfile;
+
+import java.io.FileReader;
+import java.io.Reader;
+
+/**
+ * Default severity and priority lookups of the importer for a lint.xml listing every rule: through the lint registry,
+ * as the importer used to do for each issue, or through the catalog snapshot. Each run should use a fresh JVM so that
+ * the first iteration shows the cold cost: {@code java -cp ... org.sonar.plugins.android.lint.AndroidLintProfileImporterBenchmark registry|snapshot}.
+ */
+public class AndroidLintProfileImporterBenchmark {
+
+  private static final String PROFILE = "src/test/resources/exporter/lint.xml";
+  private static final int ITERATIONS = 10;
+
+  public static void main(String[] args) throws Exception {
+    boolean registry = args.length > 0 && "registry".equals(args[0]);
+    for (int i = 0; i < ITERATIONS; i++) {
+      Reader reader = new FileReader(PROFILE);
+      try {
+        LintProfile lintProfile = new Persister().read(LintProfile.class, reader);
+        long start = System.nanoTime();
+        int priorities = 0;
+        if (registry) {
+          for (LintIssue lintIssue : lintProfile.issues) {
+            priorities += new BuiltinIssueRegistry().getIssue(lintIssue.id).getPriority();
+          }
+        } else {
+          RuleCatalog catalog = RuleCatalog.load();
+          for (LintIssue lintIssue : lintProfile.issues) {
+            priorities += catalog.rule(lintIssue.id).lintPriority();
+          }
+        }
+        System.out.printf("%s: %d issues (priority sum %d) in %8.2f ms%n", registry ? "registry" : "snapshot", lintProfile.issues.size(), priorities,
+          (System.nanoTime() - start) / 1e6);
+      } finally {
+        reader.close();
+      }
+    }
+  }
+
+}
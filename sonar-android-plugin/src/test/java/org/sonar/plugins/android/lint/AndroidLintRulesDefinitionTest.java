@@ -29,7 +29,6 @@ import org.apache.commons.lang.StringUtils;
 import org.junit.Test;
 import org.sonar.api.server.rule.RulesDefinition;
 import org.sonar.api.server.rule.RulesDefinition.SubCharacteristics;
-import org.sonar.api.server.rule.RulesDefinitionXmlLoader;
 
 import java.util.Collections;
 import java.util.List;
@@ -59,7 +58,7 @@ public class AndroidLintRulesDefinitionTest {
 
   @Test
   public void createRulesTest() {
-    RulesDefinition rulesDefinition = new AndroidLintRulesDefinition(new RulesDefinitionXmlLoader());
+    RulesDefinition rulesDefinition = new AndroidLintRulesDefinition();
     RulesDefinition.Context context = new RulesDefinition.Context();
     rulesDefinition.define(context);
     RulesDefinition.Repository repository = context.repository(AndroidLintRulesDefinition.REPOSITORY_KEY);
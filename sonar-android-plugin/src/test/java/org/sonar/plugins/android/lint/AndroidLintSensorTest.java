@@ -19,28 +19,26 @@
  */
 package org.sonar.plugins.android.lint;
 
-import com.google.common.collect.Lists;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.api.batch.SensorContext;
-import org.sonar.api.batch.fs.FilePredicate;
 import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.InputPath;
 import org.sonar.api.batch.fs.internal.DefaultFileSystem;
-import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.component.ResourcePerspectives;
 import org.sonar.api.config.Settings;
+import org.sonar.api.issue.Issuable;
+import org.sonar.api.issue.Issue;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.resources.Project;
 import org.sonar.api.rules.ActiveRule;
 import org.sonar.plugins.android.AndroidPlugin;
 
 import java.io.File;
+import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.any;
-import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -77,30 +75,31 @@ public class AndroidLintSensorTest {
     sensor = new AndroidLintSensor(settings, rulesProfile, perspectives, fs);
     assertThat(sensor.shouldExecuteOnProject(project)).isTrue();
 
+    settings.setProperty(AndroidPlugin.LINT_REPORT_PROPERTY, "missing.xml, src/test/resources/lint-re*.xml");
+    sensor = new AndroidLintSensor(settings, rulesProfile, perspectives, fs);
+    assertThat(sensor.shouldExecuteOnProject(project)).isTrue();
+
     settings.removeProperty(AndroidPlugin.LINT_REPORT_PROPERTY);
   }
 
   @Test
   public void analyse_should_raise_issue() throws Exception {
     rulesProfile = mock(RulesProfile.class);
-    ActiveRule activeRule = mock(ActiveRule.class);
-    when(activeRule.getRule()).thenReturn(org.sonar.api.rules.Rule.create("repoKey", "ruleKey"));
-    when(rulesProfile.getActiveRule(anyString(), anyString())).thenReturn(activeRule);
-
-    fs = new DefaultFileSystem(new File("")) {
-      @Override
-      public Iterable<InputFile> inputFiles(FilePredicate predicate) {
-        return Lists.<InputFile>newArrayList(new DefaultInputFile("relativePath"));
-      }
-    };
+    List<ActiveRule> activeRules = AndroidLintProcessorTest.activeRules(AndroidLintProcessorTest.REPORTED_RULE_KEYS);
+    when(rulesProfile.getActiveRulesByRepository(AndroidLintRulesDefinition.REPOSITORY_KEY)).thenReturn(activeRules);
+
+    fs = AndroidLintProcessorTest.fileSystem(new File(""));
+    Issuable issuable = mock(Issuable.class);
+    when(perspectives.as(any(Class.class), any(InputPath.class))).thenReturn(issuable);
+    when(issuable.newIssueBuilder()).thenReturn(mock(Issuable.IssueBuilder.class, new AndroidLintProcessorTest.SelfReturningAnswer()));
     settings.setProperty(AndroidPlugin.LINT_REPORT_PROPERTY, "src/test/resources/lint-report.xml");
     AndroidLintSensor sensor = new AndroidLintSensor(settings, rulesProfile, perspectives, fs);
     sensor.analyse(mock(Project.class), mock(SensorContext.class));
-    // Check we raise 30 issues on 21 different rules
-    verify(rulesProfile, times(21)).getActiveRule(anyString(), anyString());
-    verify(perspectives, times(30)).as(any(Class.class), any(InputPath.class));
+    // Active rules are looked up once for the whole report
+    verify(rulesProfile, times(1)).getActiveRulesByRepository(AndroidLintRulesDefinition.REPOSITORY_KEY);
+    // Check we raise 30 issues, looking up the issuable of each file once
+    verify(perspectives, times(AndroidLintProcessorTest.RELATIVE_REPORT_PATHS.length)).as(any(Class.class), any(InputPath.class));
+    verify(issuable, times(AndroidLintProcessorTest.RELATIVE_REPORT_ISSUES)).addIssue(any(Issue.class));
   }
 
-
-
 }
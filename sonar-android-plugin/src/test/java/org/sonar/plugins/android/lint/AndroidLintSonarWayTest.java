@@ -23,7 +23,6 @@ import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.sonar.api.profiles.RulesProfile;
-import org.sonar.api.profiles.XMLProfileParser;
 import org.sonar.api.rules.Rule;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.utils.ValidationMessages;
@@ -47,7 +46,7 @@ public class AndroidLintSonarWayTest {
         }
       }
       );
-    AndroidLintSonarWay sonarWay = new AndroidLintSonarWay(new XMLProfileParser(ruleFinder));
+    AndroidLintSonarWay sonarWay = new AndroidLintSonarWay(ruleFinder);
 
     RulesProfile profile = sonarWay.createProfile(ValidationMessages.create());
 
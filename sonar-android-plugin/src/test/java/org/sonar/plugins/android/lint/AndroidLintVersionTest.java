@@ -31,4 +31,9 @@ public class AndroidLintVersionTest {
 
     assertThat(AndroidLintVersion.readVersion("/foo/bar")).isEqualTo("");
   }
+
+  @Test
+  public void testGetPluginVersion() {
+    assertThat(AndroidLintVersion.getPluginVersion()).isNotEmpty().doesNotContain("${");
+  }
 }
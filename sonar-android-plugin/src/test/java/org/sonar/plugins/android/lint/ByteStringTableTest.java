@@ -0,0 +1,89 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ByteStringTableTest {
+
+  private final ByteStringTable table = new ByteStringTable();
+
+  @Test
+  public void lookup_by_bytes() {
+    ByteBuffer buffer = ByteBuffer.wrap("xxFooBarFooxFo".getBytes(Charsets.UTF_8));
+    String foo = "Foo";
+    assertThat(get(buffer, 2, 5)).isNull();
+    put(buffer, 2, 5, foo);
+
+    assertThat(get(buffer, 8, 11)).isSameAs(foo);
+    assertThat(get(buffer, 5, 8)).isNull();
+    // prefix
+    assertThat(get(buffer, 12, 14)).isNull();
+    assertThat(table.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_grow() {
+    for (int i = 0; i < 10000; i++) {
+      ByteBuffer buffer = ByteBuffer.wrap(("value" + i).getBytes(Charsets.UTF_8));
+      put(buffer, 0, buffer.limit(), "value" + i);
+    }
+    for (int i = 0; i < 10000; i++) {
+      ByteBuffer buffer = ByteBuffer.wrap(("value" + i).getBytes(Charsets.UTF_8));
+      assertThat(get(buffer, 0, buffer.limit())).isEqualTo("value" + i);
+    }
+    assertThat(table.size()).isEqualTo(10000);
+  }
+
+  @Test
+  public void should_not_keep_long_values() {
+    String value = Strings.repeat("a", ByteStringTable.MAX_KEY_LENGTH + 1);
+    ByteBuffer buffer = ByteBuffer.wrap(value.getBytes(Charsets.UTF_8));
+    put(buffer, 0, buffer.limit(), value);
+    assertThat(get(buffer, 0, buffer.limit())).isNull();
+    assertThat(table.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void should_stop_growing_when_full() {
+    for (int i = 0; i < ByteStringTable.MAX_ENTRIES + 10; i++) {
+      ByteBuffer buffer = ByteBuffer.wrap(Integer.toString(i).getBytes(Charsets.UTF_8));
+      put(buffer, 0, buffer.limit(), Integer.toString(i));
+    }
+    assertThat(table.size()).isEqualTo(ByteStringTable.MAX_ENTRIES);
+    ByteBuffer last = ByteBuffer.wrap(Integer.toString(ByteStringTable.MAX_ENTRIES).getBytes(Charsets.UTF_8));
+    assertThat(get(last, 0, last.limit())).isNull();
+  }
+
+  private String get(ByteBuffer buffer, int from, int to) {
+    return table.get(buffer, from, to, ByteStringTable.hash(buffer, from, to));
+  }
+
+  private void put(ByteBuffer buffer, int from, int to, String value) {
+    table.put(buffer, from, to, ByteStringTable.hash(buffer, from, to), value);
+  }
+
+}
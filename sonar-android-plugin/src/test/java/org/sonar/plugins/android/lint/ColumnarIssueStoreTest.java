@@ -0,0 +1,100 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import org.junit.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.rule.RuleKey;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ColumnarIssueStoreTest {
+
+  private final InputFile fileA = new DefaultInputFile("A.java");
+  private final InputFile fileB = new DefaultInputFile("B.java");
+  private final RuleKey rule1 = RuleKey.of("android-lint", "Rule1");
+  private final RuleKey rule2 = RuleKey.of("android-lint", "Rule2");
+
+  @Test
+  public void should_store_issues_as_rows() {
+    ColumnarIssueStore store = new ColumnarIssueStore();
+    store.add(new ResolvedIssue(fileA, rule1, "first", 3));
+    store.add(new ResolvedIssue(fileB, rule2, "second", null));
+
+    assertThat(store.size()).isEqualTo(2);
+    assertThat(store.file(0)).isSameAs(fileA);
+    assertThat(store.rule(0)).isEqualTo(rule1);
+    assertThat(store.message(0)).isEqualTo("first");
+    assertThat(store.line(0)).isEqualTo(3);
+    assertThat(store.file(1)).isSameAs(fileB);
+    assertThat(store.rule(1)).isEqualTo(rule2);
+    assertThat(store.message(1)).isEqualTo("second");
+    assertThat(store.line(1)).isNull();
+    assertThat(store.fileById(store.fileId(1))).isSameAs(fileB);
+    assertThat(store.ruleById(store.ruleId(1))).isEqualTo(rule2);
+  }
+
+  @Test
+  public void should_group_rows_by_file_in_order() {
+    ColumnarIssueStore store = new ColumnarIssueStore();
+    store.add(new ResolvedIssue(fileA, rule1, "a0", 1));
+    store.add(new ResolvedIssue(fileB, rule1, "b0", 1));
+    store.add(new ResolvedIssue(fileA, rule1, "a1", 2));
+    store.add(new ResolvedIssue(fileB, rule2, "b1", 2));
+    store.add(new ResolvedIssue(fileA, rule2, "a2", 3));
+
+    assertThat(store.rowsByFile()).isEqualTo(new int[] {0, 2, 4, 1, 3});
+  }
+
+  @Test
+  public void should_grow_past_one_chunk() {
+    ColumnarIssueStore store = new ColumnarIssueStore();
+    int count = 40000;
+    for (int i = 0; i < count; i++) {
+      store.add(new ResolvedIssue(i % 2 == 0 ? fileA : fileB, rule1, "message", i));
+    }
+
+    assertThat(store.size()).isEqualTo(count);
+    assertThat(store.line(count - 1)).isEqualTo(count - 1);
+    int[] rows = store.rowsByFile();
+    assertThat(rows[0]).isEqualTo(0);
+    assertThat(rows[count / 2 - 1]).isEqualTo(count - 2);
+    assertThat(rows[count / 2]).isEqualTo(1);
+    assertThat(store.estimatedBytes()).isGreaterThan(count * 16L).isLessThan(count * 16L + 1024);
+  }
+
+  @Test
+  public void clear_with_messages_should_forget_messages() {
+    ColumnarIssueStore store = new ColumnarIssueStore();
+    store.add(new ResolvedIssue(fileA, rule1, "message", 1));
+    long withOneRow = store.estimatedBytes();
+    store.add(new ResolvedIssue(fileA, rule1, "message", 2));
+    assertThat(store.estimatedBytes()).isEqualTo(withOneRow + 16);
+
+    store.clearWithMessages();
+    assertThat(store.size()).isEqualTo(0);
+    assertThat(store.estimatedBytes()).isEqualTo(0);
+    store.add(new ResolvedIssue(fileA, rule1, "other", 1));
+    assertThat(store.message(0)).isEqualTo("other");
+    assertThat(store.file(0)).isSameAs(fileA);
+  }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintIssue;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintLocation;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ColumnarLintReportTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private static final String[] REPORTS = {
+    "src/test/resources/lint-report.xml",
+    "src/test/resources/lint-results_absolute_path.xml",
+    "src/test/resources/lint-unknown-rule-report.xml",
+    "src/test/resources/lint-report-empty.xml",
+    "../its/plugin/projects/SonarAndroidSample/lint-results.xml"
+  };
+
+  @Test
+  public void converted_report_should_read_same_issues_as_xml_report() throws Exception {
+    for (String report : REPORTS) {
+      File converted = temp.newFile(new File(report).getName() + ColumnarLintReport.EXTENSION);
+      int records = ColumnarLintReport.convert(new File(report), converted);
+
+      List<String> expected = xmlLocations(new File(report));
+      assertThat(records).isEqualTo(expected.size());
+      assertThat(ColumnarLintReport.open(converted).size()).isEqualTo(records);
+      assertThat(locations(converted, null, Predicates.<String>alwaysTrue())).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void should_convert_compressed_report() throws Exception {
+    File report = new File("src/test/resources/lint-report.xml");
+    File gzipped = LintReportFilesTest.gzip(temp.newFile("lint-results.xml.gz"), FileUtils.readFileToByteArray(report));
+    File converted = temp.newFile("lint-results" + ColumnarLintReport.EXTENSION);
+    ColumnarLintReport.convert(gzipped, converted);
+
+    assertThat(locations(converted, null, Predicates.<String>alwaysTrue())).isEqualTo(xmlLocations(report));
+  }
+
+  @Test
+  public void should_read_issues_of_module_and_relative_issues() throws Exception {
+    File app = new File(temp.getRoot(), "app");
+    File lib = new File(temp.getRoot(), "lib");
+    File report = temp.newFile("lint-results.xml");
+    FileUtils.write(report, "<issues>"
+      + "<issue id=\"InApp\" message=\"m\"><location file=\"" + new File(app, "A.java").getPath() + "\" line=\"1\"/></issue>"
+      + "<issue id=\"InLib\" message=\"m\"><location file=\"" + new File(lib, "B.java").getPath() + "\"/></issue>"
+      + "<issue id=\"Relative\" message=\"m\"><location file=\"res/values/strings.xml\"/></issue>"
+      + "<issue id=\"InApp2\" message=\"m\"><location file=\"" + new File(temp.getRoot(), "app2/C.java").getPath() + "\"/></issue>"
+      + "<issue id=\"InAppAndLib\" message=\"m\"><location file=\"" + new File(app, "D.java").getPath() + "\" line=\"3\"/>"
+      + "<location file=\"" + new File(lib, "D.java").getPath() + "\" line=\"4\"/></issue>"
+      + "</issues>", Charsets.UTF_8.name());
+    File converted = temp.newFile("lint-results" + ColumnarLintReport.EXTENSION);
+    ColumnarLintReport.convert(report, converted);
+
+    List<String> appLocations = locations(converted, ImmutableList.of(app), Predicates.<String>alwaysTrue());
+    assertThat(appLocations).hasSize(3);
+    assertThat(appLocations.toString()).contains("InApp|").contains("Relative|").contains("InAppAndLib|m|" + new File(app, "D.java").getPath() + "|3");
+    assertThat(locations(converted, ImmutableList.of(lib), Predicates.<String>alwaysTrue())).hasSize(3);
+  }
+
+  @Test
+  public void should_skip_issues_of_filtered_rules() throws Exception {
+    File converted = temp.newFile("lint-results" + ColumnarLintReport.EXTENSION);
+    ColumnarLintReport.convert(new File("src/test/resources/lint-report.xml"), converted);
+
+    List<String> locations = locations(converted, null, Predicates.equalTo("ContentDescription"));
+    assertThat(locations).hasSize(3);
+  }
+
+  @Test(expected = IOException.class)
+  public void should_fail_on_xml_report() throws Exception {
+    ColumnarLintReport.open(new File("src/test/resources/lint-report.xml"));
+  }
+
+  @Test(expected = IOException.class)
+  public void should_fail_on_truncated_report() throws Exception {
+    File converted = temp.newFile("lint-results" + ColumnarLintReport.EXTENSION);
+    ColumnarLintReport.convert(new File("src/test/resources/lint-report.xml"), converted);
+    byte[] bytes = FileUtils.readFileToByteArray(converted);
+    FileUtils.writeByteArrayToFile(converted, Arrays.copyOf(bytes, bytes.length - 1));
+
+    ColumnarLintReport.open(converted);
+  }
+
+  @Test
+  public void should_recognize_converted_reports() {
+    assertThat(ColumnarLintReport.isColumnar(new File("lint-results" + ColumnarLintReport.EXTENSION))).isTrue();
+    assertThat(ColumnarLintReport.isColumnar(new File("lint-results.xml"))).isFalse();
+    assertThat(ColumnarLintReport.isColumnar(LintReportFiles.archiveEntry(new File("reports.zip"), "lint-results" + ColumnarLintReport.EXTENSION)))
+      .isFalse();
+  }
+
+  private static List<String> locations(File converted, @Nullable Collection<File> baseDirs, Predicate<String> ruleFilter) throws Exception {
+    final List<String> locations = Lists.newArrayList();
+    ColumnarLintReport.open(converted).read(baseDirs, ruleFilter, new LintReportReader.IssueHandler() {
+      @Override
+      public void handle(LintIssue lintIssue) {
+        assertThat(lintIssue.locations).hasSize(1);
+        locations.add(describe(lintIssue, lintIssue.locations.get(0)));
+      }
+    });
+    Collections.sort(locations);
+    return locations;
+  }
+
+  /**
+   * Issues of an XML report, one per location.
+   */
+  private static List<String> xmlLocations(File report) throws Exception {
+    final List<String> locations = Lists.newArrayList();
+    InputStream input = new FileInputStream(report);
+    try {
+      new LintReportScanner().read(input, Predicates.<String>alwaysTrue(), new LintReportReader.IssueHandler() {
+        @Override
+        public void handle(LintIssue lintIssue) {
+          for (LintLocation location : lintIssue.locations) {
+            locations.add(describe(lintIssue, location));
+          }
+        }
+      });
+    } finally {
+      input.close();
+    }
+    Collections.sort(locations);
+    return locations;
+  }
+
+  private static String describe(LintIssue issue, LintLocation location) {
+    return issue.id + "|" + issue.message + "|" + location.file + "|" + location.line;
+  }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.collect.Lists;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.rule.RuleKey;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ExternalIssueSorterTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private final InputFile[] files = {new DefaultInputFile("A.java"), new DefaultInputFile("B.java"), new DefaultInputFile("C.java")};
+  private final RuleKey[] rules = {RuleKey.of("android-lint", "Rule1"), RuleKey.of("android-lint", "Rule2")};
+
+  @Test
+  public void issues_within_budget_stay_in_memory() throws Exception {
+    File spillDir = new File(temp.getRoot(), "spill");
+    ExternalIssueSorter sorter = new ExternalIssueSorter(spillDir, 1024 * 1024);
+    List<ResolvedIssue> added = addIssues(sorter, 100);
+
+    List<ResolvedIssue> drained = drain(sorter);
+    assertThat(sorter.runs()).isEqualTo(0);
+    assertThat(spillDir).doesNotExist();
+    assertGroupedByFile(drained, added);
+  }
+
+  @Test
+  public void issues_over_budget_are_spilled_and_merged_by_file() throws Exception {
+    File spillDir = new File(temp.getRoot(), "spill");
+    // a few issues per run
+    ExternalIssueSorter sorter = new ExternalIssueSorter(spillDir, 500);
+    List<ResolvedIssue> added = addIssues(sorter, 1000);
+    assertThat(sorter.runs()).isGreaterThan(10);
+
+    List<ResolvedIssue> drained = drain(sorter);
+    assertGroupedByFile(drained, added);
+    assertThat(sorter.runs()).isEqualTo(0);
+    assertThat(spillDir.list()).isEmpty();
+  }
+
+  @Test
+  public void runs_past_fan_in_are_merged_in_passes() throws Exception {
+    File spillDir = new File(temp.getRoot(), "spill");
+    // dozens of runs, merged 4 at a time
+    ExternalIssueSorter sorter = new ExternalIssueSorter(spillDir, 500, 4);
+    List<ResolvedIssue> added = addIssues(sorter, 1000);
+    assertThat(sorter.runs()).isGreaterThan(16);
+
+    List<ResolvedIssue> drained = drain(sorter);
+    assertGroupedByFile(drained, added);
+    // issues of a file come out in the order they were added
+    for (InputFile file : files) {
+      assertThat(issuesOf(drained, file)).isEqualTo(issuesOf(added, file));
+    }
+    assertThat(sorter.runs()).isEqualTo(0);
+    assertThat(spillDir.list()).isEmpty();
+  }
+
+  private static List<String> issuesOf(List<ResolvedIssue> issues, InputFile file) {
+    List<String> issuesOfFile = Lists.newArrayList();
+    for (ResolvedIssue issue : issues) {
+      if (issue.inputFile.equals(file)) {
+        issuesOfFile.add(toString(issue));
+      }
+    }
+    return issuesOfFile;
+  }
+
+  private List<ResolvedIssue> addIssues(ExternalIssueSorter sorter, int count) throws Exception {
+    List<ResolvedIssue> added = Lists.newArrayList();
+    for (int i = 0; i < count; i++) {
+      ResolvedIssue issue = new ResolvedIssue(files[(i * 7) % files.length], rules[i % rules.length], "Message é " + i, i % 5 == 0 ? null : i);
+      sorter.add(issue);
+      added.add(issue);
+    }
+    return added;
+  }
+
+  private static List<ResolvedIssue> drain(ExternalIssueSorter sorter) throws Exception {
+    final List<ResolvedIssue> drained = Lists.newArrayList();
+    sorter.drain(new ExternalIssueSorter.Handler() {
+      @Override
+      public void handle(ResolvedIssue issue) {
+        drained.add(issue);
+      }
+    });
+    return drained;
+  }
+
+  private static void assertGroupedByFile(List<ResolvedIssue> drained, List<ResolvedIssue> added) {
+    assertThat(drained).hasSize(added.size());
+    List<InputFile> groups = Lists.newArrayList();
+    List<String> drainedIssues = Lists.newArrayList();
+    for (ResolvedIssue issue : drained) {
+      if (groups.isEmpty() || !groups.get(groups.size() - 1).equals(issue.inputFile)) {
+        assertThat(groups).excludes(issue.inputFile);
+        groups.add(issue.inputFile);
+      }
+      drainedIssues.add(toString(issue));
+    }
+    List<String> addedIssues = Lists.newArrayList();
+    for (ResolvedIssue issue : added) {
+      addedIssues.add(toString(issue));
+    }
+    assertThat(drainedIssues).containsOnly(addedIssues.toArray());
+  }
+
+  private static String toString(ResolvedIssue issue) {
+    return issue.inputFile.relativePath() + ":" + issue.ruleKey + ":" + issue.line + ":" + issue.message;
+  }
+
+}
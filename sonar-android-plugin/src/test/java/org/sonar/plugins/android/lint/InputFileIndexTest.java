@@ -0,0 +1,83 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.FilePredicate;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class InputFileIndexTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File baseDir;
+  private DefaultInputFile inputFile;
+  private int predicateLookups;
+  private DefaultFileSystem fs;
+
+  @Before
+  public void setUp() throws Exception {
+    baseDir = temp.newFolder();
+    fs = new DefaultFileSystem(baseDir) {
+      @Override
+      public InputFile inputFile(FilePredicate predicate) {
+        predicateLookups++;
+        return super.inputFile(predicate);
+      }
+    };
+    inputFile = new DefaultInputFile("src/Foo.java").setAbsolutePath(new File(baseDir, "src/Foo.java").getAbsolutePath());
+    fs.add(inputFile);
+  }
+
+  @Test
+  public void should_resolve_indexed_paths_without_predicates() throws Exception {
+    InputFileIndex index = new InputFileIndex(fs);
+
+    assertThat(index.inputFile("src/Foo.java")).isSameAs(inputFile);
+    assertThat(index.inputFile(inputFile.absolutePath())).isSameAs(inputFile);
+    assertThat(index.inputFile(new File(baseDir, "src/Foo.java").getCanonicalPath())).isSameAs(inputFile);
+    assertThat(predicateLookups).isEqualTo(0);
+  }
+
+  @Test
+  public void should_look_up_other_paths_only_once() throws Exception {
+    InputFileIndex index = new InputFileIndex(fs);
+
+    assertThat(index.inputFile("src/Unknown.java")).isNull();
+    assertThat(index.inputFile("src/Unknown.java")).isNull();
+    assertThat(predicateLookups).isEqualTo(1);
+
+    String otherForm = new File(baseDir, "src/../src/Foo.java").getPath();
+    assertThat(index.inputFile(otherForm)).isSameAs(inputFile);
+    assertThat(index.inputFile(otherForm)).isSameAs(inputFile);
+    assertThat(predicateLookups).isEqualTo(2);
+  }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.rule.RuleKey;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class IssueReplayCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private final RuleKey rule = RuleKey.of("android-lint", "Rule1");
+  private File dir;
+  private DefaultInputFile foo;
+  private DefaultInputFile bar;
+  private InputFileIndex inputFiles;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = temp.newFolder();
+    DefaultFileSystem fs = new DefaultFileSystem(temp.newFolder());
+    foo = new DefaultInputFile("src/Foo.java");
+    bar = new DefaultInputFile("src/Bar.java");
+    fs.add(foo);
+    fs.add(bar);
+    inputFiles = new InputFileIndex(fs);
+  }
+
+  @Test
+  public void should_replay_committed_issues() throws Exception {
+    List<ResolvedIssue> issues = ImmutableList.of(
+      new ResolvedIssue(foo, rule, "message é", 1),
+      new ResolvedIssue(bar, rule, "message é", null),
+      new ResolvedIssue(foo, RuleKey.of("android-lint", "Rule2"), "other message", 3));
+    IssueReplayCache cache = new IssueReplayCache(dir);
+    record(cache, "key", issues).commit();
+
+    List<String> replayed = replay(new IssueReplayCache(dir), "key");
+    assertThat(replayed).isEqualTo(describe(issues));
+  }
+
+  @Test
+  public void should_not_replay_other_key() throws Exception {
+    IssueReplayCache cache = new IssueReplayCache(dir);
+    assertThat(replay(cache, "key")).isNull();
+    record(cache, "key", ImmutableList.of(new ResolvedIssue(foo, rule, "message", 1))).commit();
+
+    assertThat(replay(cache, "other key")).isNull();
+  }
+
+  @Test
+  public void aborted_issues_should_not_be_replayed() throws Exception {
+    IssueReplayCache cache = new IssueReplayCache(dir);
+    record(cache, "key", ImmutableList.of(new ResolvedIssue(foo, rule, "message", 1))).abort();
+
+    assertThat(replay(cache, "key")).isNull();
+    assertThat(dir.list()).isEmpty();
+  }
+
+  @Test
+  public void issues_of_removed_files_should_be_dropped() throws Exception {
+    DefaultInputFile removed = new DefaultInputFile("src/Removed.java");
+    IssueReplayCache cache = new IssueReplayCache(dir);
+    record(cache, "key", ImmutableList.of(new ResolvedIssue(removed, rule, "message", 1), new ResolvedIssue(foo, rule, "message", 2))).commit();
+
+    assertThat(replay(cache, "key")).containsExactly("src/Foo.java Rule1 2 message");
+  }
+
+  @Test
+  public void should_write_many_distinct_messages_inline() throws Exception {
+    List<ResolvedIssue> issues = Lists.newArrayList();
+    for (int i = 0; i < 70000; i++) {
+      issues.add(new ResolvedIssue(foo, rule, "message " + i, i));
+    }
+    IssueReplayCache cache = new IssueReplayCache(dir);
+    record(cache, "key", issues).commit();
+
+    assertThat(replay(cache, "key")).isEqualTo(describe(issues));
+  }
+
+  @Test
+  public void corrupted_cache_should_not_be_replayed() throws Exception {
+    IssueReplayCache cache = new IssueReplayCache(dir);
+    record(cache, "key", ImmutableList.of(new ResolvedIssue(foo, rule, "message", 1))).commit();
+    File file = new File(dir, IssueReplayCache.FILE_NAME);
+    byte[] bytes = FileUtils.readFileToByteArray(file);
+    FileUtils.writeByteArrayToFile(file, Arrays.copyOf(bytes, bytes.length - 1));
+
+    assertThat(replay(cache, "key")).isNull();
+  }
+
+  @Test
+  public void key_should_depend_on_reports_rules_input_files_and_parameters() throws Exception {
+    File report = temp.newFile("lint-results.xml");
+    FileUtils.write(report, "<issues/>");
+    List<File> reports = ImmutableList.of(report);
+    List<String> rules = ImmutableList.of("Rule1", "Rule2");
+    List<String> paths = ImmutableList.of("A.java", "B.java");
+    String key = IssueReplayCache.key(reports, rules, paths, "/base");
+
+    assertThat(IssueReplayCache.key(reports, rules, paths, "/base")).isEqualTo(key);
+    assertThat(IssueReplayCache.key(reports, ImmutableList.of("Rule1"), paths, "/base")).isNotEqualTo(key);
+    assertThat(IssueReplayCache.key(reports, rules, ImmutableList.of("A.java"), "/base")).isNotEqualTo(key);
+    assertThat(IssueReplayCache.key(reports, rules, ImmutableList.of("A.java", "C.java"), "/base")).isNotEqualTo(key);
+    assertThat(IssueReplayCache.key(reports, rules, paths, "/other")).isNotEqualTo(key);
+    FileUtils.write(report, "<issues></issues>");
+    assertThat(IssueReplayCache.key(reports, rules, paths, "/base")).isNotEqualTo(key);
+  }
+
+  private static IssueReplayCache.Writer record(IssueReplayCache cache, String key, List<ResolvedIssue> issues) throws Exception {
+    IssueReplayCache.Writer writer = cache.writer(key);
+    for (ResolvedIssue issue : issues) {
+      writer.emit(issue);
+    }
+    return writer;
+  }
+
+  /**
+   * Replayed issues, or null if the cache was not replayed.
+   */
+  private List<String> replay(IssueReplayCache cache, String key) {
+    final List<ResolvedIssue> replayed = Lists.newArrayList();
+    boolean hit = cache.replay(key, inputFiles, new LintIssuePipeline.Emitter() {
+      @Override
+      public void emit(ResolvedIssue issue) {
+        replayed.add(issue);
+      }
+    });
+    return hit ? describe(replayed) : null;
+  }
+
+  private static List<String> describe(List<ResolvedIssue> issues) {
+    List<String> descriptions = Lists.newArrayList();
+    for (ResolvedIssue issue : issues) {
+      descriptions.add(issue.inputFile.relativePath() + " " + issue.ruleKey.rule() + " " + issue.line + " " + issue.message);
+    }
+    return descriptions;
+  }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.issue.Issuable;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.rule.RuleKey;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LintIssueEmitterTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private static final RuleKey RULE_KEY = RuleKey.of("android-lint", "Rule");
+
+  private final ResourcePerspectives perspectives = mock(ResourcePerspectives.class);
+  private final InputFile foo = new DefaultInputFile("Foo.java");
+  private final InputFile bar = new DefaultInputFile("Bar.java");
+  private final Issuable fooIssuable = mock(Issuable.class, RETURNS_DEEP_STUBS);
+  private final Issuable barIssuable = mock(Issuable.class, RETURNS_DEEP_STUBS);
+
+  @Test
+  public void should_look_up_issuable_once_per_file_and_batch() throws Exception {
+    when(perspectives.as(Issuable.class, foo)).thenReturn(fooIssuable);
+    when(perspectives.as(Issuable.class, bar)).thenReturn(barIssuable);
+    LintIssueEmitter emitter = new LintIssueEmitter(perspectives, 4);
+
+    emitter.emit(issue(foo));
+    emitter.emit(issue(bar));
+    emitter.emit(issue(foo));
+    verify(perspectives, never()).as(any(Class.class), any(InputFile.class));
+
+    // 4th issue reaches the batch size
+    emitter.emit(issue(foo));
+    verify(perspectives, times(1)).as(Issuable.class, foo);
+    verify(perspectives, times(1)).as(Issuable.class, bar);
+    verify(fooIssuable, times(3)).addIssue(any(Issue.class));
+    verify(barIssuable, times(1)).addIssue(any(Issue.class));
+
+    emitter.emit(issue(bar));
+    emitter.flush();
+    verify(perspectives, times(2)).as(Issuable.class, bar);
+    verify(barIssuable, times(2)).addIssue(any(Issue.class));
+  }
+
+  @Test
+  public void should_skip_files_without_issuable() throws Exception {
+    LintIssueEmitter emitter = new LintIssueEmitter(perspectives, 10);
+    emitter.emit(issue(foo));
+    emitter.flush();
+    emitter.flush();
+
+    verify(perspectives, times(1)).as(Issuable.class, foo);
+  }
+
+  @Test
+  public void should_report_same_issue_once() throws Exception {
+    when(perspectives.as(Issuable.class, foo)).thenReturn(fooIssuable);
+    when(perspectives.as(Issuable.class, bar)).thenReturn(barIssuable);
+    LintIssueEmitter emitter = new LintIssueEmitter(perspectives, 2);
+
+    emitter.emit(new ResolvedIssue(foo, RULE_KEY, "message", 1));
+    emitter.emit(new ResolvedIssue(foo, RULE_KEY, "message", 1));
+    emitter.emit(new ResolvedIssue(foo, RULE_KEY, "message", 2));
+    emitter.emit(new ResolvedIssue(foo, RULE_KEY, "message", null));
+    emitter.emit(new ResolvedIssue(foo, RULE_KEY, "other message", 1));
+    emitter.emit(new ResolvedIssue(foo, RuleKey.of("android-lint", "OtherRule"), "message", 1));
+    emitter.emit(new ResolvedIssue(bar, RULE_KEY, "message", 1));
+    // duplicates are found across batches
+    emitter.emit(new ResolvedIssue(foo, RULE_KEY, "message", null));
+    emitter.emit(new ResolvedIssue(bar, RULE_KEY, "message", 1));
+    emitter.flush();
+
+    verify(fooIssuable, times(5)).addIssue(any(Issue.class));
+    verify(barIssuable, times(1)).addIssue(any(Issue.class));
+    assertThat(emitter.duplicates()).isEqualTo(3);
+  }
+
+  @Test
+  public void with_memory_budget_issues_should_be_reported_file_after_file() throws Exception {
+    when(perspectives.as(Issuable.class, foo)).thenReturn(fooIssuable);
+    when(perspectives.as(Issuable.class, bar)).thenReturn(barIssuable);
+    File spillDir = temp.newFolder();
+    // spills every few issues
+    LintIssueEmitter emitter = new LintIssueEmitter(perspectives, 300, spillDir);
+
+    for (int i = 0; i < 100; i++) {
+      emitter.emit(issue(i % 3 == 0 ? bar : foo));
+    }
+    // already emitted in the loop, and spilled
+    emitter.emit(new ResolvedIssue(foo, RULE_KEY, "message", 2));
+    emitter.emit(new ResolvedIssue(bar, RULE_KEY, "message", null));
+    emitter.emit(new ResolvedIssue(bar, RULE_KEY, "message", null));
+    verify(perspectives, never()).as(any(Class.class), any(InputFile.class));
+    emitter.flush();
+
+    verify(perspectives, times(1)).as(Issuable.class, foo);
+    verify(perspectives, times(1)).as(Issuable.class, bar);
+    verify(fooIssuable, times(66)).addIssue(any(Issue.class));
+    verify(barIssuable, times(35)).addIssue(any(Issue.class));
+    assertThat(emitter.duplicates()).isEqualTo(2);
+    assertThat(spillDir.list()).isEmpty();
+  }
+
+  private int line;
+
+  private ResolvedIssue issue(InputFile inputFile) {
+    line++;
+    return new ResolvedIssue(inputFile, RULE_KEY, "message", line);
+  }
+
+}
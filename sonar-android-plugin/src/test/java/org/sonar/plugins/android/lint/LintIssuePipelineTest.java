@@ -0,0 +1,105 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintIssue;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintLocation;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+
+public class LintIssuePipelineTest {
+
+  private static final int ISSUES = 10000;
+
+  @Test
+  public void should_emit_every_resolved_issue_on_calling_thread() throws Exception {
+    final Thread caller = Thread.currentThread();
+    final List<String> emitted = Lists.newArrayList();
+
+    new LintIssuePipeline(4).run(new IssuesSource(), new LocationResolver(), new LintIssuePipeline.Emitter() {
+      @Override
+      public void emit(ResolvedIssue issue) {
+        assertThat(Thread.currentThread()).isSameAs(caller);
+        emitted.add(issue.message);
+      }
+    });
+
+    assertThat(emitted).hasSize(2 * ISSUES);
+    List<String> expected = Lists.newArrayList();
+    for (int i = 0; i < ISSUES; i++) {
+      expected.add("message" + i);
+      expected.add("message" + i);
+    }
+    Collections.sort(emitted);
+    Collections.sort(expected);
+    assertThat(emitted).isEqualTo(expected);
+  }
+
+  @Test
+  public void should_rethrow_failures_once_all_stages_are_done() throws Exception {
+    final IllegalStateException failure = new IllegalStateException("resolution failed");
+    try {
+      new LintIssuePipeline(2).run(new IssuesSource(), new LintIssuePipeline.Resolver() {
+        @Override
+        public List<ResolvedIssue> resolve(LintIssue lintIssue) {
+          throw failure;
+        }
+      }, new LintIssuePipeline.Emitter() {
+        @Override
+        public void emit(ResolvedIssue issue) {
+          fail("Nothing should be emitted");
+        }
+      });
+      fail("Failure should be rethrown");
+    } catch (IllegalStateException e) {
+      assertThat(e).isSameAs(failure);
+    }
+  }
+
+  private static class IssuesSource implements LintIssuePipeline.Source {
+    @Override
+    public void read(LintReportReader.IssueHandler handler) {
+      for (int i = 0; i < ISSUES; i++) {
+        handler.handle(new LintIssue("Rule", "message" + i, ImmutableList.of(new LintLocation("A.java", i), new LintLocation("B.java", i))));
+      }
+    }
+  }
+
+  private static class LocationResolver implements LintIssuePipeline.Resolver {
+    @Override
+    public List<ResolvedIssue> resolve(LintIssue lintIssue) {
+      List<ResolvedIssue> issues = Lists.newArrayList();
+      for (LintLocation location : lintIssue.locations) {
+        issues.add(new ResolvedIssue(new DefaultInputFile(location.file), RuleKey.of("android-lint", lintIssue.id), lintIssue.message, location.line));
+      }
+      return issues;
+    }
+  }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.rules.ActiveRule;
+import org.sonar.plugins.android.AndroidPlugin;
+
+import javax.xml.stream.XMLStreamException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class LintReportCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private volatile int reads;
+
+  private final LintReportReader reader = new LintReportReader() {
+    @Override
+    public void read(InputStream input, Predicate<String> ruleFilter, IssueHandler handler) throws IOException, XMLStreamException {
+      reads++;
+      new LintReportScanner().read(input, ruleFilter, handler);
+    }
+  };
+
+  private final ActiveRuleIndex activeRules = activeRules(AndroidLintProcessorTest.REPORTED_RULE_KEYS);
+
+  @Test
+  public void report_is_parsed_once_for_the_modules_reading_it() throws Exception {
+    File report = report("src/test/resources/lint-report.xml");
+    LintReportCache cache = new LintReportCache(reactor(report, temp.newFolder("app"), temp.newFolder("lib")));
+
+    ParsedLintReport parsed = cache.report(report, reader, activeRules);
+    assertThat(parsed.size()).isEqualTo(30);
+    // same report through another path, by the last module reading it
+    assertThat(cache.report(new File(report.getParentFile(), "./lint-results.xml"), reader, activeRules)).isSameAs(parsed);
+    assertThat(reads).isEqualTo(1);
+    // forgotten after its last read
+    assertThat(cache.report(report, reader, activeRules)).isNull();
+  }
+
+  @Test
+  public void report_is_forgotten_once_the_last_module_skipped_it() throws Exception {
+    File report = report("src/test/resources/lint-report.xml");
+    LintReportCache cache = new LintReportCache(reactor(report, temp.newFolder("app"), temp.newFolder("lib"), temp.newFolder("test")));
+
+    assertThat(cache.report(report, reader, activeRules)).isNotNull();
+    cache.skip(report);
+    cache.skip(report);
+    // not kept for modules which do not read it
+    assertThat(cache.report(report, reader, activeRules)).isNull();
+    assertThat(reads).isEqualTo(1);
+  }
+
+  @Test
+  public void report_of_a_single_module_is_not_kept() throws Exception {
+    File report = report("src/test/resources/lint-report.xml");
+
+    assertThat(new LintReportCache(reactor(report, temp.newFolder("app"))).report(report, reader, activeRules)).isNull();
+    assertThat(new LintReportCache().report(report, reader, activeRules)).isNull();
+    assertThat(reads).isEqualTo(0);
+  }
+
+  @Test
+  public void modified_report_is_parsed_again() throws Exception {
+    File report = report("src/test/resources/lint-report.xml");
+    LintReportCache cache = new LintReportCache(reactor(report, temp.newFolder("app"), temp.newFolder("lib"), temp.newFolder("test")));
+    ParsedLintReport parsed = cache.report(report, reader, activeRules);
+
+    FileUtils.copyFile(new File("src/test/resources/lint-results_absolute_path.xml"), report);
+    report.setLastModified(report.lastModified() - 10000);
+
+    ParsedLintReport reparsed = cache.report(report, reader, activeRules);
+    assertThat(reparsed).isNotSameAs(parsed);
+    assertThat(reparsed.size()).isEqualTo(8);
+    assertThat(reads).isEqualTo(2);
+  }
+
+  @Test
+  public void only_issues_of_active_rules_are_kept() throws Exception {
+    File report = report("src/test/resources/lint-report.xml");
+    LintReportCache cache = new LintReportCache(reactor(report, temp.newFolder("app"), temp.newFolder("lib"), temp.newFolder("test")));
+
+    assertThat(cache.report(report, reader, activeRules("ContentDescription")).size()).isEqualTo(3);
+    // another profile: parsed again
+    assertThat(cache.report(report, reader, activeRules).size()).isEqualTo(30);
+    assertThat(reads).isEqualTo(2);
+  }
+
+  @Test
+  public void different_reports_should_be_parsed_in_parallel() throws Exception {
+    final File app = temp.newFile("app-lint-results.xml");
+    final File lib = temp.newFile("lib-lint-results.xml");
+    FileUtils.copyFile(new File("src/test/resources/lint-report.xml"), app);
+    FileUtils.copyFile(new File("src/test/resources/lint-results_absolute_path.xml"), lib);
+    ProjectReactor reactor = reactor(app, temp.newFolder("app"), temp.newFolder("app2"));
+    for (File baseDir : new File[] {temp.newFolder("lib"), temp.newFolder("lib2")}) {
+      reactor.getRoot().addSubProject(ProjectDefinition.create().setBaseDir(baseDir).setProperty(AndroidPlugin.LINT_REPORT_PROPERTY, lib.getAbsolutePath()));
+    }
+    final LintReportCache cache = new LintReportCache(reactor);
+    final CountDownLatch libParsing = new CountDownLatch(1);
+    // the parsing of the app report waits for the parsing of the lib report to start
+    final LintReportReader blockingReader = new LintReportReader() {
+      @Override
+      public void read(InputStream input, Predicate<String> ruleFilter, IssueHandler handler) throws IOException, XMLStreamException {
+        try {
+          if (!libParsing.await(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Reports parsed one after the other");
+          }
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+        reader.read(input, ruleFilter, handler);
+      }
+    };
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<ParsedLintReport> appReport = executor.submit(new Callable<ParsedLintReport>() {
+        @Override
+        public ParsedLintReport call() throws Exception {
+          return cache.report(app, blockingReader, activeRules);
+        }
+      });
+      ParsedLintReport libReport = cache.report(lib, new LintReportReader() {
+        @Override
+        public void read(InputStream input, Predicate<String> ruleFilter, IssueHandler handler) throws IOException, XMLStreamException {
+          libParsing.countDown();
+          reader.read(input, ruleFilter, handler);
+        }
+      }, activeRules);
+
+      assertThat(libReport.size()).isEqualTo(8);
+      assertThat(appReport.get(10, TimeUnit.SECONDS).size()).isEqualTo(30);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void same_report_should_be_parsed_once_by_concurrent_readers() throws Exception {
+    final File report = report("src/test/resources/lint-report.xml");
+    File[] modules = new File[8];
+    for (int i = 0; i < modules.length; i++) {
+      modules[i] = temp.newFolder("module" + i);
+    }
+    final LintReportCache cache = new LintReportCache(reactor(report, modules));
+    List<Callable<ParsedLintReport>> readers = Lists.newArrayList();
+    for (int i = 0; i < modules.length; i++) {
+      readers.add(new Callable<ParsedLintReport>() {
+        @Override
+        public ParsedLintReport call() throws Exception {
+          return cache.report(report, reader, activeRules);
+        }
+      });
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      for (Future<ParsedLintReport> parsed : executor.invokeAll(readers)) {
+        assertThat(parsed.get().size()).isEqualTo(30);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertThat(reads).isEqualTo(1);
+  }
+
+  private File report(String source) throws IOException {
+    File report = temp.newFile("lint-results.xml");
+    FileUtils.copyFile(new File(source), report);
+    return report;
+  }
+
+  /**
+   * Reactor of modules all pointing at the given report.
+   */
+  static ProjectReactor reactor(File report, File... moduleBaseDirs) {
+    ProjectDefinition root = ProjectDefinition.create().setBaseDir(report.getParentFile())
+      .setProperty(AndroidPlugin.LINT_REPORT_PROPERTY, "");
+    for (File baseDir : moduleBaseDirs) {
+      root.addSubProject(ProjectDefinition.create().setBaseDir(baseDir).setProperty(AndroidPlugin.LINT_REPORT_PROPERTY, report.getAbsolutePath()));
+    }
+    return new ProjectReactor(root);
+  }
+
+  private static ActiveRuleIndex activeRules(String... keys) {
+    List<ActiveRule> activeRules = AndroidLintProcessorTest.activeRules(keys);
+    RulesProfile profile = mock(RulesProfile.class);
+    when(profile.getActiveRulesByRepository(AndroidLintRulesDefinition.REPOSITORY_KEY)).thenReturn(activeRules);
+    return new ActiveRuleIndex(profile);
+  }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LintReportFilesTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private byte[] content;
+
+  @Before
+  public void setUp() throws Exception {
+    content = FileUtils.readFileToByteArray(new File("src/test/resources/lint-report.xml"));
+  }
+
+  @Test
+  public void plain_report() throws Exception {
+    File report = temp.newFile("lint-results.xml");
+    FileUtils.writeByteArrayToFile(report, content);
+
+    assertThat(LintReportFiles.exists(report)).isTrue();
+    assertThat(LintReportFiles.physicalFile(report)).isEqualTo(report);
+    assertThat(read(report)).isEqualTo(content);
+  }
+
+  @Test
+  public void gzipped_report() throws Exception {
+    File report = gzip(temp.newFile("lint-results.xml.gz"), content);
+
+    assertThat(LintReportFiles.exists(report)).isTrue();
+    assertThat(read(report)).isEqualTo(content);
+  }
+
+  @Test
+  public void archive_entry() throws Exception {
+    File archive = zip(temp.newFile("reports.zip"), "app/build/outputs/lint-results.xml", content);
+    File report = LintReportFiles.archiveEntry(archive, "app/build/outputs/lint-results.xml");
+
+    assertThat(LintReportFiles.exists(report)).isTrue();
+    assertThat(LintReportFiles.physicalFile(report)).isEqualTo(archive);
+    assertThat(read(report)).isEqualTo(content);
+
+    assertThat(LintReportFiles.exists(LintReportFiles.archiveEntry(archive, "app/build/outputs"))).isFalse();
+    assertThat(LintReportFiles.exists(LintReportFiles.archiveEntry(archive, "missing.xml"))).isFalse();
+    assertThat(LintReportFiles.exists(LintReportFiles.archiveEntry(new File(temp.getRoot(), "missing.zip"), "lint-results.xml"))).isFalse();
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void missing_archive_entry() throws Exception {
+    File archive = zip(temp.newFile("reports.zip"), "lint-results.xml", content);
+    LintReportFiles.open(LintReportFiles.archiveEntry(archive, "missing.xml"));
+  }
+
+  private static byte[] read(File report) throws Exception {
+    InputStream input = LintReportFiles.open(report);
+    try {
+      return IOUtils.toByteArray(input);
+    } finally {
+      input.close();
+    }
+  }
+
+  static File gzip(File file, byte[] content) throws Exception {
+    OutputStream output = new GZIPOutputStream(new FileOutputStream(file));
+    try {
+      output.write(content);
+    } finally {
+      output.close();
+    }
+    return file;
+  }
+
+  static File zip(File file, String entry, byte[] content) throws Exception {
+    ZipOutputStream output = new ZipOutputStream(new FileOutputStream(file));
+    try {
+      output.putNextEntry(new ZipEntry("app/"));
+      output.closeEntry();
+      output.putNextEntry(new ZipEntry(entry));
+      output.write(content);
+      output.closeEntry();
+    } finally {
+      output.close();
+    }
+    return file;
+  }
+
+}
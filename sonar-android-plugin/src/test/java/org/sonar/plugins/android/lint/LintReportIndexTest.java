@@ -0,0 +1,209 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintIssue;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintLocation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LintReportIndexTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File app;
+  private File lib;
+  private File report;
+  private File indexDir;
+
+  @Before
+  public void setUp() throws Exception {
+    app = new File(temp.getRoot(), "app");
+    lib = new File(temp.getRoot(), "lib");
+    File app2 = new File(temp.getRoot(), "app2");
+    report = new File(temp.getRoot(), "lint-results.xml");
+    indexDir = new File(temp.getRoot(), "work/android-lint");
+    FileUtils.write(report, "<issues>\n"
+      + issue("InApp", new File(app, "A.java").getPath()) + "\n"
+      + issue("InLib", new File(lib, "C.java").getPath()) + "\n"
+      + issue("Relative", "res/values/strings.xml") + "\n"
+      + issue("InApp2", new File(app2, "D.java").getPath()) + "\n"
+      + issue("InAppAndLib", new File(app, "B.java").getPath(), new File(lib, "C.java").getPath()) + "\n"
+      + issue("InAppTwice", new File(app, "A.java").getPath(), new File(app, "A.java").getPath()) + "\n"
+      + "</issues>", Charsets.UTF_8.name());
+  }
+
+  @Test
+  public void should_read_issues_of_module_and_relative_issues() throws Exception {
+    LintReportIndex index = index(report);
+    assertThat(index.size()).isEqualTo(6);
+
+    assertThat(ids(index.ranges(ImmutableList.of(app)))).containsExactly("InApp", "Relative", "InAppAndLib", "InAppTwice");
+    assertThat(ids(index.ranges(ImmutableList.of(lib)))).containsExactly("InLib", "Relative", "InAppAndLib");
+    assertThat(ids(index.ranges(ImmutableList.of(temp.getRoot())))).containsExactly("InApp", "InLib", "Relative", "InApp2", "InAppAndLib",
+      "InAppTwice");
+  }
+
+  @Test
+  public void adjacent_ranges_should_be_merged() throws Exception {
+    FileUtils.write(report, "<issues>" + issue("A", new File(app, "A.java").getPath()) + issue("B", new File(app, "B.java").getPath())
+      + "</issues>", Charsets.UTF_8.name());
+    long[] ranges = index(report).ranges(ImmutableList.of(app));
+    assertThat(ranges).hasSize(2);
+    assertThat(ids(ranges)).containsExactly("A", "B");
+  }
+
+  @Test
+  public void should_write_and_load_index() throws Exception {
+    LintReportIndex index = index(report);
+    assertThat(LintReportIndex.load(indexDir, report)).isNull();
+
+    index.write(indexDir, report);
+    assertThat(LintReportIndex.indexFile(indexDir, report)).exists();
+    LintReportIndex loaded = LintReportIndex.load(indexDir, report);
+    assertThat(loaded).isNotNull();
+    assertThat(loaded.size()).isEqualTo(index.size());
+    assertThat(loaded.ranges(ImmutableList.of(app))).isEqualTo(index.ranges(ImmutableList.of(app)));
+    assertThat(loaded.ranges(ImmutableList.of(lib))).isEqualTo(index.ranges(ImmutableList.of(lib)));
+  }
+
+  @Test
+  public void index_of_modified_report_should_be_ignored() throws Exception {
+    index(report).write(indexDir, report);
+    report.setLastModified(report.lastModified() - 10000);
+    assertThat(LintReportIndex.load(indexDir, report)).isNull();
+
+    index(report).write(indexDir, report);
+    FileUtils.write(report, "<issues/>", Charsets.UTF_8.name());
+    report.setLastModified(report.lastModified() - 20000);
+    assertThat(LintReportIndex.load(indexDir, report)).isNull();
+  }
+
+  @Test
+  public void index_should_be_keyed_by_canonical_path_of_report() throws Exception {
+    index(report).write(indexDir, report);
+    assertThat(LintReportIndex.indexFile(indexDir, report).getParentFile()).isEqualTo(indexDir);
+    assertThat(new File(report.getPath() + LintReportIndex.EXTENSION)).doesNotExist();
+
+    FileUtils.forceMkdir(app);
+    File sameReport = new File(app, "../lint-results.xml");
+    assertThat(LintReportIndex.indexFile(indexDir, sameReport)).isEqualTo(LintReportIndex.indexFile(indexDir, report));
+    assertThat(LintReportIndex.load(indexDir, sameReport)).isNotNull();
+    File otherReport = new File(lib, "lint-results.xml");
+    assertThat(LintReportIndex.indexFile(indexDir, otherReport)).isNotEqualTo(LintReportIndex.indexFile(indexDir, report));
+  }
+
+  @Test
+  public void index_of_report_rewritten_with_same_size_and_date_should_be_ignored() throws Exception {
+    index(report).write(indexDir, report);
+    long lastModified = report.lastModified();
+    String content = FileUtils.readFileToString(report, Charsets.UTF_8.name());
+    FileUtils.write(report, content.replace("InApp", "InAPP"), Charsets.UTF_8.name());
+    report.setLastModified(lastModified);
+    assertThat(LintReportIndex.load(indexDir, report)).isNull();
+  }
+
+  @Test
+  public void index_should_not_be_written_when_report_changed_while_read() throws Exception {
+    LintReportIndex index = index(report);
+    report.setLastModified(report.lastModified() - 10000);
+    index.write(indexDir, report);
+    assertThat(LintReportIndex.indexFile(indexDir, report)).doesNotExist();
+  }
+
+  @Test
+  public void corrupted_index_should_be_ignored() throws Exception {
+    index(report).write(indexDir, report);
+    File indexFile = LintReportIndex.indexFile(indexDir, report);
+    FileUtils.writeByteArrayToFile(indexFile, Arrays.copyOf(FileUtils.readFileToByteArray(indexFile), 40));
+    assertThat(LintReportIndex.load(indexDir, report)).isNull();
+    FileUtils.write(indexFile, "garbage");
+    assertThat(LintReportIndex.load(indexDir, report)).isNull();
+  }
+
+  @Test
+  public void should_retain_locations_of_module() {
+    List<String> directories = ParsedLintReport.directories(ImmutableList.of(app));
+    LintIssue issue = new LintIssue("Id", "m", Lists.newArrayList(
+      new LintLocation(new File(app, "A.java").getPath(), 1),
+      new LintLocation(new File(lib, "C.java").getPath(), 2),
+      new LintLocation("res/values/strings.xml", null),
+      new LintLocation(new File(temp.getRoot(), "app2/D.java").getPath(), 3)));
+    assertThat(LintReportIndex.retainLocations(issue, directories)).isTrue();
+    assertThat(issue.locations).hasSize(2);
+    assertThat(issue.locations.get(0).line).isEqualTo(1);
+    assertThat(issue.locations.get(1).file).isEqualTo("res/values/strings.xml");
+
+    LintIssue other = new LintIssue("Id", "m", Lists.newArrayList(new LintLocation(new File(lib, "C.java").getPath(), 2)));
+    assertThat(LintReportIndex.retainLocations(other, directories)).isFalse();
+  }
+
+  private static String issue(String id, String... files) {
+    StringBuilder issue = new StringBuilder("<issue id=\"" + id + "\" message=\"Message of " + id + "\" explanation=\"...\">");
+    for (String file : files) {
+      issue.append("<location file=\"").append(file).append("\" line=\"1\"/>");
+    }
+    return issue.append("</issue>").toString();
+  }
+
+  private static LintReportIndex index(File report) throws Exception {
+    LintReportIndex.Builder builder = new LintReportIndex.Builder(report);
+    InputStream input = new FileInputStream(report);
+    try {
+      new LintReportScanner().index(input, builder);
+    } finally {
+      input.close();
+    }
+    return builder.build();
+  }
+
+  private List<String> ids(long[] ranges) throws Exception {
+    final List<String> ids = Lists.newArrayList();
+    InputStream input = LintReportIndex.open(report, ranges);
+    try {
+      new LintReportScanner(16).readIssues(input, Predicates.<String>alwaysTrue(), new LintReportReader.IssueHandler() {
+        @Override
+        public void handle(LintIssue lintIssue) {
+          ids.add(lintIssue.id);
+        }
+      });
+    } finally {
+      input.close();
+    }
+    return ids;
+  }
+
+}
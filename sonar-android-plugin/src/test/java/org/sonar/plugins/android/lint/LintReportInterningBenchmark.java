@@ -0,0 +1,83 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.base.Predicates;
+import com.google.common.collect.Lists;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintIssue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Retained heap and GC time of the issues of a synthetic report, as held by the report cache, with and without
+ * interning of attribute values. To be run in a fresh JVM per mode:
+ * {@code java -cp ... org.sonar.plugins.android.lint.LintReportInterningBenchmark interned|plain [issues]}.
+ */
+public class LintReportInterningBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    boolean interning = !"plain".equals(args.length > 0 ? args[0] : "interned");
+    int issueCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+    File report = File.createTempFile("lint-benchmark", ".xml");
+    report.deleteOnExit();
+    LintReportReaderBenchmark.writeReport(report, issueCount, 100);
+
+    System.gc();
+    long heapBefore = usedHeap();
+    long gcBefore = gcTime();
+    long start = System.nanoTime();
+    final List<LintIssue> issues = Lists.newArrayListWithCapacity(issueCount);
+    InputStream input = new FileInputStream(report);
+    try {
+      new LintReportScanner(64 * 1024, false, interning).read(input, Predicates.<String>alwaysTrue(), new LintReportReader.IssueHandler() {
+        @Override
+        public void handle(LintIssue lintIssue) {
+          issues.add(lintIssue.copy());
+        }
+      });
+    } finally {
+      input.close();
+    }
+    long elapsed = System.nanoTime() - start;
+    long gc = gcTime() - gcBefore;
+    System.gc();
+    long retained = usedHeap() - heapBefore;
+    System.out.printf("%s: %d issues (%.1f MB report) in %.2f s, GC %d ms, retained %.1f MB%n",
+      interning ? "interned" : "plain", issues.size(), report.length() / 1e6, elapsed / 1e9, gc, retained / 1e6);
+  }
+
+  private static long usedHeap() {
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  private static long gcTime() {
+    long time = 0;
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      time += Math.max(0, collector.getCollectionTime());
+    }
+    return time;
+  }
+
+}
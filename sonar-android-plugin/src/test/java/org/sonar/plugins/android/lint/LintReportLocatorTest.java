@@ -0,0 +1,104 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LintReportLocatorTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File baseDir;
+  private LintReportLocator locator;
+  private File appReport;
+  private File appDebugReport;
+  private File libReport;
+
+  @Before
+  public void setUp() throws Exception {
+    baseDir = temp.getRoot().getCanonicalFile();
+    locator = new LintReportLocator(baseDir);
+    appReport = newFile("app/build/outputs/lint-results.xml");
+    appDebugReport = newFile("app/build/outputs/lint-results-debug.xml");
+    libReport = newFile("lib/build/outputs/lint-results.xml");
+    newFile("lib/build/outputs/lint-results.html");
+  }
+
+  @Test
+  public void no_value() {
+    assertThat(locator.locate(null)).isEmpty();
+    assertThat(locator.locate(" , ")).isEmpty();
+  }
+
+  @Test
+  public void plain_paths() {
+    assertThat(locator.locate("app/build/outputs/lint-results.xml")).containsExactly(appReport);
+    assertThat(locator.locate(libReport.getAbsolutePath() + " , missing.xml,app/build/outputs/lint-results.xml"))
+      .containsExactly(libReport, appReport);
+    assertThat(locator.locate("app/build/outputs")).isEmpty();
+  }
+
+  @Test
+  public void glob_in_file_name() {
+    assertThat(locator.locate("app/build/outputs/lint-results*.xml")).containsExactly(appDebugReport, appReport);
+    assertThat(locator.locate("app/build/outputs/lint-results-?????.xml")).containsExactly(appDebugReport);
+    assertThat(locator.locate("lib/build/outputs/*.{xml,txt}")).containsExactly(libReport);
+  }
+
+  @Test
+  public void glob_in_directories() {
+    assertThat(locator.locate("*/build/outputs/lint-results.xml")).containsExactly(appReport, libReport);
+    assertThat(locator.locate("**/lint-results.xml")).containsExactly(appReport, libReport);
+    assertThat(locator.locate(baseDir.getAbsolutePath() + "/**/lint-results*.xml")).containsExactly(appDebugReport, appReport, libReport);
+    assertThat(locator.locate("missing/**/*.xml")).isEmpty();
+  }
+
+  @Test
+  public void compressed_reports() throws Exception {
+    File gzipped = newFile("app/build/outputs/lint-results.xml.gz");
+    File archive = LintReportFilesTest.zip(new File(baseDir, "reports.zip"), "app/lint-results.xml", new byte[] {'<'});
+
+    assertThat(locator.locate("app/build/outputs/*.gz")).containsExactly(gzipped);
+    assertThat(locator.locate("reports.zip!/app/lint-results.xml")).containsExactly(LintReportFiles.archiveEntry(archive, "app/lint-results.xml"));
+    assertThat(locator.locate("reports.zip!/missing.xml")).isEmpty();
+  }
+
+  @Test
+  public void duplicates_are_removed() {
+    assertThat(locator.locate("app/build/outputs/lint-results.xml,**/lint-results.xml")).containsExactly(appReport, libReport);
+  }
+
+  private File newFile(String path) throws IOException {
+    File file = new File(baseDir, path);
+    file.getParentFile().mkdirs();
+    file.createNewFile();
+    return file;
+  }
+
+}
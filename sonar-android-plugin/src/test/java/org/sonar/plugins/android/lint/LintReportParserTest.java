@@ -0,0 +1,89 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.base.Predicates;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintIssue;
+
+import javax.xml.stream.XMLStreamException;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LintReportParserTest {
+
+  @Test
+  public void should_stream_all_issues() throws Exception {
+    List<LintIssue> issues = parse("src/test/resources/lint-report.xml");
+
+    assertThat(issues).hasSize(21);
+    int locations = 0;
+    for (LintIssue issue : issues) {
+      locations += issue.locations.size();
+    }
+    assertThat(locations).isEqualTo(30);
+
+    LintIssue first = issues.get(0);
+    assertThat(first.id).isEqualTo("MissingRegistered");
+    assertThat(first.message).isEqualTo("Class referenced in the manifest, com.octo.appaloosasdk.async.AppaloosaSpiceService, was not found in the project or the libraries");
+    assertThat(first.locations.get(0).file).isEqualTo("AndroidManifest.xml");
+    assertThat(first.locations.get(0).line).isEqualTo(64);
+  }
+
+  @Test
+  public void should_decode_entities() throws Exception {
+    List<LintIssue> issues = parse("src/test/resources/lint-results_absolute_path.xml");
+
+    assertThat(issues).hasSize(8);
+    assertThat(issues.get(0).message).isEqualTo("Don't include android.R here; use a fully qualified name for each usage instead");
+  }
+
+  @Test
+  public void should_handle_empty_report() throws Exception {
+    assertThat(parse("src/test/resources/lint-report-empty.xml")).isEmpty();
+  }
+
+  @Test(expected = XMLStreamException.class)
+  public void should_fail_on_unexpected_root_element() throws Exception {
+    parse("src/test/resources/lint-bad-report.xml");
+  }
+
+  private static List<LintIssue> parse(String path) throws Exception {
+    final List<LintIssue> issues = Lists.newArrayList();
+    InputStream input = new FileInputStream(path);
+    try {
+      new LintReportParser().read(input, Predicates.<String>alwaysTrue(), new LintReportReader.IssueHandler() {
+        @Override
+        public void handle(LintIssue lintIssue) {
+          issues.add(lintIssue);
+        }
+      });
+    } finally {
+      input.close();
+    }
+    return issues;
+  }
+
+}
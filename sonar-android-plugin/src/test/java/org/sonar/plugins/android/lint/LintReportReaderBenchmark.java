@@ -0,0 +1,95 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Predicates;
+import com.google.common.base.Strings;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintIssue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Throughput of the report readers on a synthetic report whose bytes are mostly explanations.
+ * Not run by the build: {@code java -cp ... org.sonar.plugins.android.lint.LintReportReaderBenchmark [issues]}.
+ */
+public class LintReportReaderBenchmark {
+
+  private static final int ITERATIONS = 5;
+
+  public static void main(String[] args) throws Exception {
+    int issues = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    File report = File.createTempFile("lint-benchmark", ".xml");
+    report.deleteOnExit();
+    writeReport(report, issues, 4000);
+    System.out.printf("Report: %d issues, %.1f MB%n", issues, report.length() / 1e6);
+
+    for (int i = 0; i < ITERATIONS; i++) {
+      run("stax", new LintReportParser(), report);
+      run("scanner", new LintReportScanner(), report);
+      run("mmap", LintReportScanner.mapped(), report);
+    }
+  }
+
+  private static void run(String name, LintReportReader reader, File report) throws Exception {
+    final int[] count = new int[1];
+    long start = System.nanoTime();
+    InputStream input = new FileInputStream(report);
+    try {
+      reader.read(input, Predicates.<String>alwaysTrue(), new LintReportReader.IssueHandler() {
+        @Override
+        public void handle(LintIssue lintIssue) {
+          count[0] += lintIssue.locations.size();
+        }
+      });
+    } finally {
+      input.close();
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf("%-8s %7d locations in %6.3f s: %7.1f MB/s%n", name, count[0], seconds, report.length() / 1e6 / seconds);
+  }
+
+  static void writeReport(File file, int issues, int explanationSize) throws IOException {
+    String explanation = Strings.repeat("Lint explanation with &quot;entities&quot; &amp; markup. ", explanationSize / 56 + 1);
+    Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), Charsets.UTF_8));
+    try {
+      writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<issues format=\"4\" by=\"lint 24.1.2\">\n");
+      for (int i = 0; i < issues; i++) {
+        writer.write("    <issue\n        id=\"Rule" + (i % 300) + "\"\n        severity=\"Warning\"\n");
+        writer.write("        message=\"Message " + (i % 1000) + " for rule\"\n        category=\"Correctness\"\n        priority=\"6\"\n");
+        writer.write("        summary=\"Summary of the rule\"\n        explanation=\"" + explanation + "\"\n");
+        writer.write("        errorLine1=\"    int value = compute();\"\n        errorLine2=\"    ~~~~~~~~~~~~~~~~~~~~~~\">\n");
+        writer.write("        <location\n            file=\"src/main/java/org/example/File" + (i % 2000) + ".java\"\n");
+        writer.write("            line=\"" + (i % 500 + 1) + "\"\n            column=\"5\"/>\n    </issue>\n");
+      }
+      writer.write("</issues>\n");
+    } finally {
+      writer.close();
+    }
+  }
+
+}
@@ -0,0 +1,296 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.Lists;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintIssue;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintLocation;
+
+import javax.xml.stream.XMLStreamException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LintReportScannerTest {
+
+  // bytes allocated per issue, on top of what is allocated per distinct value: issue and locations are reused
+  private static final long ALLOCATION_BUDGET_PER_ISSUE = 16;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private static final String[] REPORTS = {
+    "src/test/resources/lint-report.xml",
+    "src/test/resources/lint-results_absolute_path.xml",
+    "src/test/resources/lint-unknown-rule-report.xml",
+    "src/test/resources/lint-report-empty.xml",
+    "../its/plugin/projects/SonarAndroidSample/lint-results.xml"
+  };
+
+  @Test
+  public void should_read_same_issues_as_stax_parser() throws Exception {
+    for (String report : REPORTS) {
+      List<LintIssue> expected = read(new LintReportParser(), new FileInputStream(report));
+      assertSameIssues(read(new LintReportScanner(), new FileInputStream(report)), expected);
+      // a tiny buffer forces tags and attribute values to span several refills
+      assertSameIssues(read(new LintReportScanner(16), new FileInputStream(report)), expected);
+    }
+  }
+
+  @Test
+  public void mapped_report_should_read_same_issues_as_stax_parser() throws Exception {
+    for (String report : REPORTS) {
+      List<LintIssue> expected = read(new LintReportParser(), new FileInputStream(report));
+      assertSameIssues(read(LintReportScanner.mapped(), new FileInputStream(report)), expected);
+      // small chunks force tags and attribute values to span several mappings (kept above a few
+      // hundred bytes: mappings are only released once garbage collected)
+      assertSameIssues(read(new LintReportScanner(512, true), new FileInputStream(report)), expected);
+    }
+  }
+
+  @Test
+  public void repeated_values_should_share_one_string() throws Exception {
+    String xml = "<issues>"
+      + "<issue id=\"Id\" message=\"a &amp; b\"><location file=\"f\"/></issue>"
+      + "<issue id=\"Id\" message=\"a &amp; b\"><location file=\"f\"/><location file=\"g\"/></issue>"
+      + "</issues>";
+    List<LintIssue> issues = read(new LintReportScanner(8), new ByteArrayInputStream(xml.getBytes(Charsets.UTF_8)));
+    assertThat(issues.get(1).id).isSameAs(issues.get(0).id);
+    assertThat(issues.get(1).message).isEqualTo("a & b").isSameAs(issues.get(0).message);
+    assertThat(issues.get(1).locations.get(0).file).isSameAs(issues.get(0).locations.get(0).file);
+
+    issues = read(new LintReportScanner(8, false, false), new ByteArrayInputStream(xml.getBytes(Charsets.UTF_8)));
+    assertThat(issues.get(1).id).isEqualTo(issues.get(0).id).isNotSameAs(issues.get(0).id);
+  }
+
+  @Test
+  public void mapped_scanner_should_buffer_other_streams() throws Exception {
+    String xml = "<issues><issue id=\"Id\" message=\"m\"><location file=\"f\"/></issue></issues>";
+    List<LintIssue> issues = read(new LintReportScanner(4, true), new ByteArrayInputStream(xml.getBytes(Charsets.UTF_8)));
+    assertThat(issues).hasSize(1);
+  }
+
+  @Test
+  public void should_hand_over_byte_ranges_of_issues() throws Exception {
+    String xml = "<issues>\n"
+      + "  <issue id=\"A\" message=\"m\"><location file=\"f\"/></issue>\n"
+      + "  <other/>\n"
+      + "  <issue id=\"B\" message=\"é\"><location file=\"g\"/></issue>\n"
+      + "</issues>";
+    final byte[] bytes = xml.getBytes(Charsets.UTF_8);
+    final List<String> elements = Lists.newArrayList();
+    final List<Long> ranges = Lists.newArrayList();
+    new LintReportScanner(8).index(new ByteArrayInputStream(bytes), new LintReportScanner.RangeHandler() {
+      @Override
+      public void handle(LintIssue lintIssue, long start, long end) {
+        elements.add(new String(bytes, (int) start, (int) (end - start), Charsets.UTF_8));
+        ranges.add(start);
+        ranges.add(end);
+      }
+    });
+    assertThat(elements).containsExactly(
+      "<issue id=\"A\" message=\"m\"><location file=\"f\"/></issue>",
+      "<issue id=\"B\" message=\"é\"><location file=\"g\"/></issue>");
+
+    // the second issue alone, then both issues put end to end
+    byte[] second = Arrays.copyOfRange(bytes, ranges.get(2).intValue(), ranges.get(3).intValue());
+    List<LintIssue> issues = readIssues(new ByteArrayInputStream(second));
+    assertThat(issues).hasSize(1);
+    assertThat(issues.get(0).message).isEqualTo("é");
+    String both = elements.get(0) + elements.get(1);
+    assertThat(readIssues(new ByteArrayInputStream(both.getBytes(Charsets.UTF_8)))).hasSize(2);
+  }
+
+  @Test(expected = XMLStreamException.class)
+  public void issues_should_not_be_closed() throws Exception {
+    readIssues(new ByteArrayInputStream("<issue id='A' message='m'><location file='f'/></issue></issues>".getBytes(Charsets.UTF_8)));
+  }
+
+  @Test
+  public void should_decode_used_attributes() throws Exception {
+    String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+      + "<!DOCTYPE issues>\n"
+      + "<!-- <issue id=\"Commented\"> -->\n"
+      + "<issues format=\"4\">\n"
+      + "  <other><issue id='Nested' message='m'><location file='f'/></issue></other>\n"
+      + "  <issue explanation=\"a &lt;b&gt; &amp;&#x20;skipped\" id='Single' message=\"l&apos;&quot;&#233;té\n\tend\r\nx\">\n"
+      + "    <![CDATA[ <location file=\"cdata\"/> ]]>\n"
+      + "    <location file=\"A.java\" line=\"12\" column=\"3\"><extra/></location>\n"
+      + "    <location file=\"B.java\" />\n"
+      + "  </issue>\n"
+      + "</issues>\n";
+    List<LintIssue> issues = read(new LintReportScanner(8), new ByteArrayInputStream(xml.getBytes(Charsets.UTF_8)));
+
+    assertThat(issues).hasSize(1);
+    LintIssue issue = issues.get(0);
+    assertThat(issue.id).isEqualTo("Single");
+    assertThat(issue.message).isEqualTo("l'\"été  end x");
+    assertThat(issue.locations).hasSize(2);
+    assertThat(issue.locations.get(0).file).isEqualTo("A.java");
+    assertThat(issue.locations.get(0).line).isEqualTo(12);
+    assertThat(issue.locations.get(1).file).isEqualTo("B.java");
+    assertThat(issue.locations.get(1).line).isNull();
+  }
+
+  @Test
+  public void should_skip_issues_rejected_by_rule_filter() throws Exception {
+    for (LintReportReader reader : new LintReportReader[] {new LintReportParser(), new LintReportScanner()}) {
+      List<LintIssue> issues = read(reader, new FileInputStream("src/test/resources/lint-report.xml"), Predicates.equalTo("ContentDescription"));
+      assertThat(issues).hasSize(3);
+      for (LintIssue issue : issues) {
+        assertThat(issue.id).isEqualTo("ContentDescription");
+      }
+    }
+  }
+
+  @Test
+  public void should_not_decode_rejected_issues() throws Exception {
+    // message and location of the rejected issue are invalid but never read
+    String xml = "<issues><issue id=\"Inactive\"><location/></issue><issue id=\"Active\" message=\"m\"><location file=\"f\"/></issue></issues>";
+    List<LintIssue> issues = read(new LintReportScanner(), new ByteArrayInputStream(xml.getBytes(Charsets.UTF_8)), Predicates.equalTo("Active"));
+
+    assertThat(issues).hasSize(1);
+    assertThat(issues.get(0).id).isEqualTo("Active");
+  }
+
+  @Test(expected = XMLStreamException.class)
+  public void should_fail_on_unexpected_root_element() throws Exception {
+    read(new LintReportScanner(), new FileInputStream("src/test/resources/lint-bad-report.xml"));
+  }
+
+  @Test(expected = XMLStreamException.class)
+  public void should_fail_on_missing_required_attribute() throws Exception {
+    read(new LintReportScanner(), new ByteArrayInputStream("<issues><issue id=\"a\"><location file=\"f\"/></issue></issues>".getBytes(Charsets.UTF_8)));
+  }
+
+  @Test(expected = XMLStreamException.class)
+  public void should_fail_on_truncated_report() throws Exception {
+    read(new LintReportScanner(), new ByteArrayInputStream("<issues><issue id=\"a\" message=\"b\"><location fi".getBytes(Charsets.UTF_8)));
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void should_fail_on_invalid_line() throws Exception {
+    read(new LintReportScanner(), new ByteArrayInputStream("<issues><issue id=\"a\" message=\"b\"><location file=\"f\" line=\"x\"/></issue></issues>".getBytes(Charsets.UTF_8)));
+  }
+
+  private static void assertSameIssues(List<LintIssue> actual, List<LintIssue> expected) {
+    assertThat(actual).hasSize(expected.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertThat(actual.get(i).id).isEqualTo(expected.get(i).id);
+      assertThat(actual.get(i).message).isEqualTo(expected.get(i).message);
+      assertThat(actual.get(i).locations).hasSize(expected.get(i).locations.size());
+      for (int j = 0; j < expected.get(i).locations.size(); j++) {
+        LintLocation location = actual.get(i).locations.get(j);
+        assertThat(location.file).isEqualTo(expected.get(i).locations.get(j).file);
+        assertThat(location.line).isEqualTo(expected.get(i).locations.get(j).line);
+      }
+    }
+  }
+
+  @Test
+  public void reading_should_allocate_next_to_nothing_per_issue() throws Exception {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+    Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+    // both reports hold the same distinct values: the difference is what is allocated per issue, not per value
+    int issues = 20000;
+    File report = temp.newFile("lint-results.xml");
+    LintReportReaderBenchmark.writeReport(report, issues, 100);
+    File doubleReport = temp.newFile("lint-results-double.xml");
+    LintReportReaderBenchmark.writeReport(doubleReport, 2 * issues, 100);
+
+    long bytesPerIssue = Long.MAX_VALUE;
+    // the first runs warm up the JIT
+    for (int run = 0; run < 3; run++) {
+      long bytes = allocatedBytes(allocations, report);
+      long doubleBytes = allocatedBytes(allocations, doubleReport);
+      bytesPerIssue = Math.min(bytesPerIssue, (doubleBytes - bytes) / issues);
+    }
+
+    assertThat(bytesPerIssue).isLessThan(ALLOCATION_BUDGET_PER_ISSUE);
+  }
+
+  private static long allocatedBytes(com.sun.management.ThreadMXBean allocations, File report) throws Exception {
+    final int[] locations = new int[1];
+    long threadId = Thread.currentThread().getId();
+    InputStream input = new FileInputStream(report);
+    long before = allocations.getThreadAllocatedBytes(threadId);
+    try {
+      new LintReportScanner().read(input, Predicates.<String>alwaysTrue(), new LintReportReader.IssueHandler() {
+        @Override
+        public void handle(LintIssue lintIssue) {
+          locations[0] += lintIssue.locations.size();
+        }
+      });
+    } finally {
+      input.close();
+    }
+    long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+    assertThat(locations[0]).isGreaterThan(0);
+    return allocated;
+  }
+
+  private static List<LintIssue> readIssues(InputStream input) throws Exception {
+    final List<LintIssue> issues = Lists.newArrayList();
+    new LintReportScanner(8).readIssues(input, Predicates.<String>alwaysTrue(), new LintReportReader.IssueHandler() {
+      @Override
+      public void handle(LintIssue lintIssue) {
+        issues.add(lintIssue.copy());
+      }
+    });
+    return issues;
+  }
+
+  private static List<LintIssue> read(LintReportReader reader, InputStream input) throws Exception {
+    return read(reader, input, Predicates.<String>alwaysTrue());
+  }
+
+  private static List<LintIssue> read(LintReportReader reader, InputStream input, Predicate<String> ruleFilter) throws Exception {
+    final List<LintIssue> issues = Lists.newArrayList();
+    try {
+      reader.read(input, ruleFilter, new LintReportReader.IssueHandler() {
+        @Override
+        public void handle(LintIssue lintIssue) {
+          issues.add(lintIssue.copy());
+        }
+      });
+    } finally {
+      input.close();
+    }
+    return issues;
+  }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LongHashSetTest {
+
+  @Test
+  public void add_and_contains() {
+    LongHashSet set = new LongHashSet(4);
+    assertThat(set.add(42L)).isTrue();
+    assertThat(set.add(42L)).isFalse();
+    assertThat(set.add(-42L)).isTrue();
+    assertThat(set.add(Long.MIN_VALUE)).isTrue();
+    assertThat(set.contains(42L)).isTrue();
+    assertThat(set.contains(43L)).isFalse();
+    assertThat(set.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void zero_is_a_value() {
+    LongHashSet set = new LongHashSet(4);
+    assertThat(set.contains(0L)).isFalse();
+    assertThat(set.add(0L)).isTrue();
+    assertThat(set.add(0L)).isFalse();
+    assertThat(set.contains(0L)).isTrue();
+    assertThat(set.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_grow_like_a_set() {
+    LongHashSet set = new LongHashSet(1);
+    Set<Long> expected = new HashSet<Long>();
+    Random random = new Random(1);
+    for (int i = 0; i < 100000; i++) {
+      // a small range, to get duplicates
+      long value = random.nextInt(50000) * 0x100000000L;
+      assertThat(set.add(value)).isEqualTo(expected.add(value));
+    }
+    assertThat(set.size()).isEqualTo(expected.size());
+    for (Long value : expected) {
+      assertThat(set.contains(value)).isTrue();
+    }
+  }
+
+}
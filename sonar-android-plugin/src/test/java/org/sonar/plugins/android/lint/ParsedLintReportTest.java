@@ -0,0 +1,109 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintIssue;
+import org.sonar.plugins.android.lint.AndroidLintProcessor.LintLocation;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ParsedLintReportTest {
+
+  private ParsedLintReport report;
+
+  @Before
+  public void setUp() {
+    ParsedLintReport.Builder builder = new ParsedLintReport.Builder();
+    builder.handle(issue("Relative", "res/layout/main.xml"));
+    builder.handle(issue("App", "/project/app/src/Foo.java"));
+    builder.handle(issue("AppAndLib", "/project/app/res/main.xml", "/project/lib/res/main.xml"));
+    builder.handle(issue("App2", "/project/app2/src/Foo.java"));
+    builder.handle(issue("Lib", "/project/lib/src/Foo.java"));
+    report = builder.build();
+  }
+
+  @Test
+  public void issues_with_several_locations_are_split() {
+    assertThat(report.size()).isEqualTo(6);
+    List<LintIssue> issues = replay(Predicates.<String>alwaysTrue(), "/project");
+    assertThat(issues).hasSize(6);
+    for (LintIssue issue : issues) {
+      assertThat(issue.locations).hasSize(1);
+    }
+  }
+
+  @Test
+  public void module_gets_its_issues_and_relative_ones() {
+    assertThat(ids(replay(Predicates.<String>alwaysTrue(), "/project/app"))).containsOnly("Relative", "App", "AppAndLib");
+    assertThat(ids(replay(Predicates.<String>alwaysTrue(), "/project/lib"))).containsOnly("Relative", "AppAndLib", "Lib");
+    assertThat(ids(replay(Predicates.<String>alwaysTrue(), "/other"))).containsOnly("Relative");
+  }
+
+  @Test
+  public void nested_base_dirs_do_not_replay_issues_twice() {
+    assertThat(replay(Predicates.<String>alwaysTrue(), "/project/app", "/project/app/src", "/project/app/")).hasSize(3);
+  }
+
+  @Test
+  public void rule_filter_is_applied() {
+    assertThat(ids(replay(Predicates.in(ImmutableList.of("App", "Lib")), "/project"))).containsOnly("App", "Lib");
+  }
+
+  private List<LintIssue> replay(Predicate<String> ruleFilter, String... baseDirs) {
+    List<File> dirs = Lists.newArrayList();
+    for (String baseDir : baseDirs) {
+      dirs.add(new File(baseDir));
+    }
+    final List<LintIssue> issues = Lists.newArrayList();
+    report.replay(dirs, ruleFilter, new LintReportReader.IssueHandler() {
+      @Override
+      public void handle(LintIssue lintIssue) {
+        issues.add(lintIssue);
+      }
+    });
+    return issues;
+  }
+
+  private static List<String> ids(List<LintIssue> issues) {
+    List<String> ids = Lists.newArrayList();
+    for (LintIssue issue : issues) {
+      ids.add(issue.id);
+    }
+    return ids;
+  }
+
+  private static LintIssue issue(String id, String... files) {
+    List<LintLocation> locations = Lists.newArrayList();
+    for (String file : files) {
+      locations.add(new LintLocation(file, 1));
+    }
+    return new LintIssue(id, "message", locations);
+  }
+
+}
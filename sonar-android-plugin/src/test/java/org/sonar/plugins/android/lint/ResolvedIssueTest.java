@@ -0,0 +1,49 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import org.junit.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.rule.RuleKey;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ResolvedIssueTest {
+
+  private final InputFile fileA = new DefaultInputFile("A.java");
+  private final InputFile fileB = new DefaultInputFile("B.java");
+  private final RuleKey rule1 = RuleKey.of("android-lint", "Rule1");
+  private final RuleKey rule2 = RuleKey.of("android-lint", "Rule2");
+
+  @Test
+  public void fingerprints_should_identify_equal_issues() {
+    long fingerprint = new ResolvedIssue(fileA, rule1, "message", 1).fingerprint();
+
+    assertThat(new ResolvedIssue(new DefaultInputFile("A.java"), RuleKey.of("android-lint", "Rule1"), "message", 1).fingerprint())
+      .isEqualTo(fingerprint);
+    assertThat(new ResolvedIssue(fileA, rule1, "message", null).fingerprint()).isNotEqualTo(fingerprint);
+    assertThat(new ResolvedIssue(fileA, rule1, "message", 2).fingerprint()).isNotEqualTo(fingerprint);
+    assertThat(new ResolvedIssue(fileB, rule1, "message", 1).fingerprint()).isNotEqualTo(fingerprint);
+    assertThat(new ResolvedIssue(fileA, rule2, "message", 1).fingerprint()).isNotEqualTo(fingerprint);
+    assertThat(new ResolvedIssue(fileA, rule1, "other", 1).fingerprint()).isNotEqualTo(fingerprint);
+  }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.android.tools.lint.checks.BuiltinIssueRegistry;
+import com.android.tools.lint.client.api.IssueRegistry;
+import com.android.tools.lint.detector.api.Issue;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Resources;
+import org.junit.Test;
+import org.sonar.api.server.rule.RulesDefinition;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+
+public class RuleCatalogTest {
+
+  @Test
+  public void catalog_should_define_rules_with_descriptions() {
+    RulesDefinition.Context context = new RulesDefinition.Context();
+    RulesDefinition.NewRepository repository = context.createRepository(AndroidLintRulesDefinition.REPOSITORY_KEY, "java");
+    RuleCatalog.load().define(repository);
+    repository.done();
+
+    List<RulesDefinition.Rule> rules = context.repository(AndroidLintRulesDefinition.REPOSITORY_KEY).rules();
+    assertThat(rules).hasSize(158);
+    for (RulesDefinition.Rule rule : rules) {
+      assertThat(rule.htmlDescription()).as(rule.key()).isNotEmpty();
+    }
+  }
+
+  @Test
+  public void catalog_should_snapshot_lint_defaults() throws Exception {
+    IssueRegistry registry = new BuiltinIssueRegistry();
+    for (RuleCatalog.Rule rule : RuleCatalog.load().rules()) {
+      Issue issue = registry.getIssue(rule.key());
+      assertThat(rule.lintSeverity()).as(rule.key()).isEqualTo(issue.getDefaultSeverity());
+      assertThat(rule.lintPriority()).as(rule.key()).isEqualTo(issue.getPriority());
+    }
+  }
+
+  @Test
+  public void should_write_and_read_catalog() throws Exception {
+    RuleCatalog catalog = RuleCatalog.load();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    catalog.write(output);
+
+    RuleCatalog copy = RuleCatalog.read(ByteStreams.newInputStreamSupplier(output.toByteArray()));
+
+    assertThat(copy.profileName()).isEqualTo("Android Lint");
+    assertThat(copy.profileRuleKeys()).isEqualTo(catalog.profileRuleKeys());
+    assertThat(copy.rules()).hasSize(158);
+    assertThat(copy.htmlDescriptions()).isEqualTo(catalog.htmlDescriptions());
+  }
+
+  @Test
+  public void loading_should_not_read_descriptions() throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    RuleCatalog.load().write(output);
+    byte[] bytes = output.toByteArray();
+    // magic, version and length of the metadata section, then the metadata
+    int metadataEnd = 12 + ByteBuffer.wrap(bytes, 8, 4).getInt();
+
+    RuleCatalog catalog = RuleCatalog.read(ByteStreams.newInputStreamSupplier(Arrays.copyOf(bytes, metadataEnd)));
+
+    assertThat(catalog.rules()).hasSize(158);
+    assertThat(catalog.rule("HardcodedText").lintPriority()).isEqualTo(5);
+    try {
+      catalog.htmlDescriptions();
+      fail();
+    } catch (EOFException e) {
+      // descriptions are only read when the rules are defined
+    }
+  }
+
+  @Test
+  public void descriptions_should_be_compressed() throws Exception {
+    int uncompressed = 0;
+    for (String htmlDescription : RuleCatalog.load().htmlDescriptions()) {
+      uncompressed += htmlDescription.getBytes(Charsets.UTF_8).length;
+    }
+    byte[] bytes = Resources.toByteArray(RuleCatalog.class.getResource(RuleCatalog.CATALOG_PATH));
+    int descriptionsSection = bytes.length - 12 - ByteBuffer.wrap(bytes, 8, 4).getInt();
+
+    assertThat(descriptionsSection).isLessThan(uncompressed / 2);
+  }
+
+  @Test
+  public void xml_sources_should_not_be_shipped() {
+    assertThat(RuleCatalog.class.getResource("/org/sonar/plugins/android/lint/rules.xml")).isNull();
+    assertThat(RuleCatalog.class.getResource("/org/sonar/plugins/android/lint/java-model.xml")).isNull();
+    assertThat(RuleCatalog.class.getResource("/org/sonar/plugins/android/lint/android_lint_sonar_way.xml")).isNull();
+  }
+
+  @Test(expected = IOException.class)
+  public void should_fail_on_unknown_format() throws Exception {
+    RuleCatalog.read(ByteStreams.newInputStreamSupplier("<rules/>".getBytes(Charsets.UTF_8)));
+  }
+
+}
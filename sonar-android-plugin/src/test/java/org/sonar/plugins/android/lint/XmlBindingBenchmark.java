@@ -0,0 +1,57 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import org.simpleframework.xml.Serializer;
+import org.simpleframework.xml.core.Persister;
+import org.sonar.plugins.android.lint.AndroidLintProfileExporter.LintProfile;
+
+import java.io.File;
+
+/**
+ * Reading a lint.xml of every rule with a new {@link Persister} per call, as the importer used to, or with the shared
+ * {@link XmlBinding}. Each run should use a fresh JVM so that the first call shows the cold cost:
+ * {@code java -cp ... org.sonar.plugins.android.lint.XmlBindingBenchmark new|shared}.
+ */
+public class XmlBindingBenchmark {
+
+  private static final File PROFILE = new File("src/test/resources/exporter/lint.xml");
+  private static final int CALLS = 500;
+
+  public static void main(String[] args) throws Exception {
+    boolean shared = args.length == 0 || !"new".equals(args[0]);
+    long start = System.nanoTime();
+    read(shared);
+    System.out.printf("%s: first call %8.2f ms%n", shared ? "shared" : "new", (System.nanoTime() - start) / 1e6);
+    for (int run = 0; run < 8; run++) {
+      start = System.nanoTime();
+      for (int i = 0; i < CALLS; i++) {
+        read(shared);
+      }
+      System.out.printf("%s: %8.3f ms per call%n", shared ? "shared" : "new", (System.nanoTime() - start) / 1e6 / CALLS);
+    }
+  }
+
+  private static void read(boolean shared) throws Exception {
+    Serializer serializer = shared ? XmlBinding.serializer() : new Persister();
+    serializer.read(LintProfile.class, PROFILE);
+  }
+
+}
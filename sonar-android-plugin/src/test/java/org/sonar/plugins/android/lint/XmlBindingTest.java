@@ -0,0 +1,63 @@
+/*
+ * SonarQube Android Lint Plugin
+ * Copyright (C) 2013-2016 SonarSource SA and Jerome Van Der Linden, Stephane Nicolas, Florian Roncari, Thomas Bores
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.android.lint;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.sonar.plugins.android.lint.AndroidLintProfileExporter.LintProfile;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class XmlBindingTest {
+
+  @Test
+  public void serializer_should_be_shared() throws Exception {
+    assertThat(XmlBinding.serializer()).isSameAs(XmlBinding.serializer());
+  }
+
+  @Test
+  public void shared_serializer_should_read_from_several_threads() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<LintProfile>> results = Lists.newArrayList();
+      for (int i = 0; i < 16; i++) {
+        results.add(executor.submit(new Callable<LintProfile>() {
+          @Override
+          public LintProfile call() throws Exception {
+            return XmlBinding.serializer().read(LintProfile.class, new File("src/test/resources/exporter/lint.xml"));
+          }
+        }));
+      }
+      for (Future<LintProfile> result : results) {
+        assertThat(result.get().issues).hasSize(158);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+}